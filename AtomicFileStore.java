@@ -0,0 +1,113 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Crash-safe file primitives shared by StudentManagementApp and QuizApp. Whole files are replaced by
+// writing a synced temp file and renaming it over the target, so readers see either the old or the new
+// contents. Append-only logs frame every record as [length][crc32][payload], so a torn or corrupted
+// tail is detected and the log is recovered up to its last good record.
+class AtomicFileStore {
+    static final int FRAME_OVERHEAD = 8;
+    
+    interface ContentWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+    
+    static class Frames {
+        final List<byte[]> records;
+        final int validEnd;
+        final int length;
+        
+        Frames(List<byte[]> records, int validEnd, int length) {
+            this.records = records;
+            this.validEnd = validEnd;
+            this.length = length;
+        }
+        
+        boolean isTruncated() {
+            return validEnd < length;
+        }
+    }
+    
+    static void replace(File target, ContentWriter writer) throws IOException {
+        File directory = target.getAbsoluteFile().getParentFile();
+        File temp = new File(directory, target.getName() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+            writer.write(out);
+            out.flush();
+            fileOut.getFD().sync();
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory(directory);
+    }
+    
+    // Makes the rename itself durable. Not every platform can open a directory, so failure only loses that guarantee.
+    static void syncDirectory(File directory) {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Best effort.
+        }
+    }
+    
+    static byte[] frame(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return ByteBuffer.allocate(FRAME_OVERHEAD + payload.length)
+            .putInt(payload.length)
+            .putInt((int) crc.getValue())
+            .put(payload)
+            .array();
+    }
+    
+    static void writeFrame(DataOutputStream out, byte[] payload) throws IOException {
+        out.write(frame(payload));
+    }
+    
+    // Reads records from offset until the data ends or a record is short or fails its checksum.
+    static Frames readFrames(byte[] data, int offset) {
+        List<byte[]> records = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int position = offset;
+        while (data.length - position >= FRAME_OVERHEAD) {
+            int length = buffer.getInt(position);
+            int checksum = buffer.getInt(position + 4);
+            if (length < 0 || length > data.length - position - FRAME_OVERHEAD) {
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(data, position + FRAME_OVERHEAD, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            System.arraycopy(data, position + FRAME_OVERHEAD, payload, 0, length);
+            records.add(payload);
+            position += FRAME_OVERHEAD + length;
+        }
+        return new Frames(records, position, data.length);
+    }
+    
+    // Cuts a log back to its last good record so new appends never land behind garbage.
+    static void truncate(File file, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+            channel.force(true);
+        }
+    }
+}
@@ -1,160 +1,2570 @@
 import javax.swing.*;
 import javax.swing.border.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.AbstractTableModel;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAdjusters;
+import java.time.temporal.WeekFields;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongUnaryOperator;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
 class Question implements Serializable {
     private String question;
     private String[] options;
     private int correctAnswer;
     private int timeLimit;
+    private String topic;
+    private int difficulty;
     
     public Question(String question, String[] options, int correctAnswer, int timeLimit) {
+        this(question, options, correctAnswer, timeLimit, "Java", 1);
+    }
+    
+    public Question(String question, String[] options, int correctAnswer, int timeLimit, String topic, int difficulty) {
         this.question = question;
         this.options = options;
         this.correctAnswer = correctAnswer;
         this.timeLimit = timeLimit;
+        this.topic = topic;
+        this.difficulty = difficulty;
+    }
+    
+    public String getQuestion() { return question; }
+    public String[] getOptions() { return options; }
+    public int getCorrectAnswer() { return correctAnswer; }
+    public int getTimeLimit() { return timeLimit; }
+    public String getTopic() { return topic; }
+    public int getDifficulty() { return difficulty; }
+}
+
+abstract class QuestionBank {
+    private Map<String, int[]> byTopic;
+    private final Map<String, Map<Integer, int[]>> byTopicAndDifficulty = new HashMap<>();
+    
+    public abstract int size();
+    public abstract Question get(int index);
+    public abstract String getTopic(int index);
+    public abstract int getDifficulty(int index);
+    
+    private synchronized int[] topicIndices(String topic) {
+        if (byTopic == null) {
+            Map<String, List<Integer>> groups = new HashMap<>();
+            for (int i = 0; i < size(); i++) {
+                groups.computeIfAbsent(getTopic(i), t -> new ArrayList<>()).add(i);
+            }
+            byTopic = new HashMap<>();
+            for (Map.Entry<String, List<Integer>> group : groups.entrySet()) {
+                byTopic.put(group.getKey(), group.getValue().stream().mapToInt(Integer::intValue).toArray());
+            }
+        }
+        return byTopic.getOrDefault(topic, new int[0]);
+    }
+    
+    // Each (topic, difficulty) filter scans its topic, or the whole bank for a null topic, the first time it is
+    // asked for and is answered from the cached indices after that.
+    private synchronized int[] difficultyIndices(String topic, int difficulty) {
+        Map<Integer, int[]> byDifficulty = byTopicAndDifficulty.computeIfAbsent(topic, t -> new HashMap<>());
+        int[] cached = byDifficulty.get(difficulty);
+        if (cached != null) {
+            return cached;
+        }
+        int[] pool = topic != null ? topicIndices(topic) : null;
+        int n = pool != null ? pool.length : size();
+        int[] matches = new int[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            int index = pool != null ? pool[i] : i;
+            if (getDifficulty(index) == difficulty) {
+                matches[count++] = index;
+            }
+        }
+        int[] indices = Arrays.copyOf(matches, count);
+        byDifficulty.put(difficulty, indices);
+        return indices;
+    }
+    
+    private int[] candidates(String topic, Integer difficulty) {
+        if (topic == null && difficulty == null) {
+            return null;
+        }
+        if (difficulty == null) {
+            return topicIndices(topic);
+        }
+        return difficultyIndices(topic, difficulty);
+    }
+    
+    // Floyd's algorithm picks k distinct indices in O(k) without copying or shuffling the bank.
+    public List<Question> sample(int count, String topic, Integer difficulty, Random random) {
+        int[] pool = candidates(topic, difficulty);
+        int n = pool != null ? pool.length : size();
+        int k = Math.min(count, n);
+        Set<Integer> chosen = new HashSet<>();
+        List<Integer> picks = new ArrayList<>(k);
+        for (int j = n - k; j < n; j++) {
+            int t = random.nextInt(j + 1);
+            int pick = chosen.add(t) ? t : j;
+            if (pick == j) {
+                chosen.add(j);
+            }
+            picks.add(pick);
+        }
+        Collections.shuffle(picks, random);
+        List<Question> sampled = new ArrayList<>(k);
+        for (int pick : picks) {
+            sampled.add(get(pool != null ? pool[pick] : pick));
+        }
+        return sampled;
+    }
+}
+
+class InMemoryQuestionBank extends QuestionBank {
+    private final List<Question> questions;
+    
+    public InMemoryQuestionBank(List<Question> questions) {
+        this.questions = questions;
+    }
+    
+    public int size() { return questions.size(); }
+    public Question get(int index) { return questions.get(index); }
+    public String getTopic(int index) { return questions.get(index).getTopic(); }
+    public int getDifficulty(int index) { return questions.get(index).getDifficulty(); }
+}
+
+class CachedQuestionBank extends QuestionBank {
+    private final QuestionBank source;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<Integer, Question> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    
+    public CachedQuestionBank(QuestionBank source, int maxEntries, long maxBytes) {
+        this.source = source;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+    
+    public int size() { return source.size(); }
+    public String getTopic(int index) { return source.getTopic(index); }
+    public int getDifficulty(int index) { return source.getDifficulty(index); }
+    
+    public Question get(int index) {
+        synchronized (this) {
+            Question cached = cache.get(index);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+        Question question = source.get(index);
+        synchronized (this) {
+            if (cache.putIfAbsent(index, question) == null) {
+                bytes += estimateBytes(question);
+                evict();
+            }
+        }
+        return question;
+    }
+    
+    private void evict() {
+        Iterator<Question> eldest = cache.values().iterator();
+        while ((cache.size() > maxEntries || bytes > maxBytes) && eldest.hasNext()) {
+            bytes -= estimateBytes(eldest.next());
+            eldest.remove();
+            evictions++;
+        }
+    }
+    
+    static long estimateBytes(Question question) {
+        long size = 64 + 40 + 2L * question.getQuestion().length();
+        for (String option : question.getOptions()) {
+            size += 40 + 2L * option.length();
+        }
+        return size;
+    }
+    
+    public synchronized int getCachedCount() { return cache.size(); }
+    public synchronized long getCachedBytes() { return bytes; }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+    
+    public synchronized double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+}
+
+class FileQuestionBank extends QuestionBank implements Closeable {
+    private static final int MAGIC = 0x51424E4B;
+    private static final int VERSION = 1;
+    private final FileChannel channel;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final int[] topicIds;
+    private final byte[] difficulties;
+    private final String[] topics;
+    
+    private FileQuestionBank(FileChannel channel, long[] offsets, int[] lengths, int[] topicIds,
+                             byte[] difficulties, String[] topics) {
+        this.channel = channel;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.topicIds = topicIds;
+        this.difficulties = difficulties;
+        this.topics = topics;
+    }
+    
+    public static FileQuestionBank open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath());
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a question bank file: " + file);
+            }
+            int count = in.readInt();
+            long indexOffset = in.readLong();
+            channel.position(indexOffset);
+            in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+            String[] topics = new String[in.readInt()];
+            for (int i = 0; i < topics.length; i++) {
+                topics[i] = in.readUTF();
+            }
+            long[] offsets = new long[count];
+            int[] lengths = new int[count];
+            int[] topicIds = new int[count];
+            byte[] difficulties = new byte[count];
+            for (int i = 0; i < count; i++) {
+                offsets[i] = in.readLong();
+                lengths[i] = in.readInt();
+                topicIds[i] = in.readInt();
+                difficulties[i] = in.readByte();
+            }
+            return new FileQuestionBank(channel, offsets, lengths, topicIds, difficulties, topics);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    public static void write(File file, List<Question> questions) throws IOException {
+        Map<String, Integer> topicIds = new HashMap<>();
+        List<String> topics = new ArrayList<>();
+        long[] offsets = new long[questions.size()];
+        int[] lengths = new int[questions.size()];
+        long position = 20;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(questions.size());
+            out.writeLong(0);
+            for (int i = 0; i < questions.size(); i++) {
+                Question q = questions.get(i);
+                int before = out.size();
+                out.writeUTF(q.getQuestion());
+                out.writeByte(q.getOptions().length);
+                for (String option : q.getOptions()) {
+                    out.writeUTF(option);
+                }
+                out.writeByte(q.getCorrectAnswer());
+                out.writeShort(q.getTimeLimit());
+                offsets[i] = position;
+                lengths[i] = out.size() - before;
+                position += lengths[i];
+                topicIds.computeIfAbsent(q.getTopic(), t -> {
+                    topics.add(t);
+                    return topics.size() - 1;
+                });
+            }
+            out.writeInt(topics.size());
+            for (String topic : topics) {
+                out.writeUTF(topic);
+            }
+            for (int i = 0; i < questions.size(); i++) {
+                Question q = questions.get(i);
+                out.writeLong(offsets[i]);
+                out.writeInt(lengths[i]);
+                out.writeInt(topicIds.get(q.getTopic()));
+                out.writeByte(q.getDifficulty());
+            }
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(12);
+            raf.writeLong(position);
+        }
+    }
+    
+    public int size() { return offsets.length; }
+    public String getTopic(int index) { return topics[topicIds[index]]; }
+    public int getDifficulty(int index) { return difficulties[index]; }
+    
+    public Question get(int index) {
+        ByteBuffer buffer = ByteBuffer.allocate(lengths[index]);
+        try {
+            long position = offsets[index];
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position + buffer.position());
+                if (read < 0) throw new EOFException("Truncated question bank");
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.array()));
+            String text = in.readUTF();
+            String[] options = new String[in.readUnsignedByte()];
+            for (int i = 0; i < options.length; i++) {
+                options[i] = in.readUTF();
+            }
+            int correctAnswer = in.readUnsignedByte();
+            int timeLimit = in.readUnsignedShort();
+            return new Question(text, options, correctAnswer, timeLimit, getTopic(index), getDifficulty(index));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
+
+class QuizScore implements Serializable {
+    // Pinned to the value of the original class so legacy score files still deserialize.
+    private static final long serialVersionUID = 5886459186367002252L;
+    static final String DATE_PATTERN = "dd-MM-yyyy HH:mm";
+    
+    private String playerName;
+    private int score;
+    private int totalQuestions;
+    private String date;
+    private double accuracy;
+    private long timestamp;
+    
+    public QuizScore(String playerName, int score, int totalQuestions, long timestamp, double accuracy) {
+        this.playerName = playerName;
+        this.score = score;
+        this.totalQuestions = totalQuestions;
+        this.timestamp = timestamp;
+        this.accuracy = accuracy;
+    }
+    
+    public String getPlayerName() { return playerName; }
+    public int getScore() { return score; }
+    public int getTotalQuestions() { return totalQuestions; }
+    public double getAccuracy() { return accuracy; }
+    public long getTimestamp() { return timestamp; }
+    
+    public String getDate() {
+        if (date == null) {
+            date = new SimpleDateFormat(DATE_PATTERN).format(new Date(timestamp));
+        }
+        return date;
+    }
+    
+    static long parseDate(String date) {
+        try {
+            return new SimpleDateFormat(DATE_PATTERN).parse(date).getTime();
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+    
+    // Scores deserialized from the legacy format only carry the formatted date.
+    QuizScore withTimestamp() {
+        return timestamp != 0 || date == null ? this : new QuizScore(playerName, score, totalQuestions, parseDate(date), accuracy);
+    }
+}
+
+enum LeaderboardPeriod {
+    LAST_HOUR, TODAY, THIS_WEEK, ALL_TIME
+}
+
+// A leaderboard over a moving time range, kept as one Leaderboard per time bucket; buckets that fall
+// behind the range are dropped whole, so nothing is ever removed score by score.
+class RollingLeaderboard {
+    private final LongUnaryOperator bucketOf;
+    private final LongUnaryOperator cutoff;
+    private final TreeMap<Long, Leaderboard> buckets = new TreeMap<>();
+    
+    RollingLeaderboard(LongUnaryOperator bucketOf, LongUnaryOperator cutoff) {
+        this.bucketOf = bucketOf;
+        this.cutoff = cutoff;
+    }
+    
+    static RollingLeaderboard lastHour() {
+        long minute = 60_000L;
+        return new RollingLeaderboard(t -> Math.floorDiv(t, minute) * minute, now -> Math.floorDiv(now, minute) * minute - 59 * minute);
+    }
+    
+    static RollingLeaderboard today(ZoneId zone) {
+        LongUnaryOperator startOfDay = t -> Instant.ofEpochMilli(t).atZone(zone).toLocalDate().atStartOfDay(zone).toInstant().toEpochMilli();
+        return new RollingLeaderboard(startOfDay, startOfDay);
+    }
+    
+    static RollingLeaderboard thisWeek(ZoneId zone, DayOfWeek firstDay) {
+        LongUnaryOperator startOfWeek = t -> {
+            LocalDate day = Instant.ofEpochMilli(t).atZone(zone).toLocalDate();
+            return day.with(TemporalAdjusters.previousOrSame(firstDay)).atStartOfDay(zone).toInstant().toEpochMilli();
+        };
+        return new RollingLeaderboard(startOfWeek, startOfWeek);
+    }
+    
+    public synchronized void add(QuizScore score, long now) {
+        expire(now);
+        long bucket = bucketOf.applyAsLong(score.getTimestamp());
+        if (bucket >= cutoff.applyAsLong(now)) {
+            buckets.computeIfAbsent(bucket, b -> new Leaderboard()).add(score);
+        }
+    }
+    
+    private void expire(long now) {
+        buckets.headMap(cutoff.applyAsLong(now)).clear();
+    }
+    
+    public synchronized int size(long now) {
+        expire(now);
+        int size = 0;
+        for (Leaderboard bucket : buckets.values()) {
+            size += bucket.size();
+        }
+        return size;
+    }
+    
+    public synchronized int rankOf(int score, long now) {
+        expire(now);
+        int higher = 0;
+        for (Leaderboard bucket : buckets.values()) {
+            higher += bucket.rankOf(score) - 1;
+        }
+        return higher + 1;
+    }
+    
+    // Only the top k of each bucket can make the overall top k, so the merge never touches the full history.
+    public synchronized List<QuizScore> top(int k, long now) {
+        expire(now);
+        if (buckets.size() == 1) {
+            return buckets.firstEntry().getValue().top(k);
+        }
+        List<QuizScore> merged = new ArrayList<>();
+        for (Leaderboard bucket : buckets.values()) {
+            merged.addAll(bucket.top(k));
+        }
+        merged.sort((a, b) -> Integer.compare(b.getScore(), a.getScore()));
+        return new ArrayList<>(merged.subList(0, Math.min(k, merged.size())));
+    }
+}
+
+interface LeaderboardListener {
+    void scoreInserted(int index);
+    
+    void scoresAdded(int count);
+}
+
+class Leaderboard extends AbstractList<QuizScore> {
+    private static class Node {
+        final QuizScore score;
+        final long sequence;
+        final int priority;
+        int size = 1;
+        Node left;
+        Node right;
+        
+        Node(QuizScore score, long sequence, int priority) {
+            this.score = score;
+            this.sequence = sequence;
+            this.priority = priority;
+        }
+    }
+    
+    private final Random random = new Random();
+    private final List<LeaderboardListener> listeners = new CopyOnWriteArrayList<>();
+    private Node root;
+    private long nextSequence;
+    
+    private static int size(Node n) {
+        return n == null ? 0 : n.size;
+    }
+    
+    private static Node update(Node n) {
+        n.size = 1 + size(n.left) + size(n.right);
+        return n;
+    }
+    
+    // Higher scores first; equal scores in the order they were achieved, which history segments loaded
+    // late would otherwise break, and insertion order only among identical timestamps.
+    private static boolean before(Node a, Node b) {
+        if (a.score.getScore() != b.score.getScore()) {
+            return a.score.getScore() > b.score.getScore();
+        }
+        if (a.score.getTimestamp() != b.score.getTimestamp()) {
+            return a.score.getTimestamp() < b.score.getTimestamp();
+        }
+        return a.sequence < b.sequence;
+    }
+    
+    private static Node insert(Node n, Node node) {
+        if (n == null) return node;
+        if (node.priority > n.priority) {
+            Node[] parts = split(n, node);
+            node.left = parts[0];
+            node.right = parts[1];
+            return update(node);
+        }
+        if (before(node, n)) {
+            n.left = insert(n.left, node);
+        } else {
+            n.right = insert(n.right, node);
+        }
+        return update(n);
+    }
+    
+    private static Node[] split(Node n, Node key) {
+        if (n == null) return new Node[2];
+        if (before(n, key)) {
+            Node[] parts = split(n.right, key);
+            n.right = parts[0];
+            parts[0] = update(n);
+            return parts;
+        }
+        Node[] parts = split(n.left, key);
+        n.left = parts[1];
+        parts[1] = update(n);
+        return parts;
+    }
+    
+    @Override
+    public synchronized boolean add(QuizScore score) {
+        Node node = new Node(score, nextSequence++, random.nextInt());
+        root = insert(root, node);
+        if (!listeners.isEmpty()) {
+            int index = indexOf(node);
+            for (LeaderboardListener listener : listeners) {
+                listener.scoreInserted(index);
+            }
+        }
+        return true;
+    }
+    
+    // Listeners hear about a batch once, by count, rather than once per score.
+    @Override
+    public synchronized boolean addAll(Collection<? extends QuizScore> scores) {
+        for (QuizScore score : scores) {
+            root = insert(root, new Node(score, nextSequence++, random.nextInt()));
+        }
+        if (!scores.isEmpty()) {
+            for (LeaderboardListener listener : listeners) {
+                listener.scoresAdded(scores.size());
+            }
+        }
+        return !scores.isEmpty();
+    }
+    
+    private int indexOf(Node node) {
+        int index = 0;
+        Node n = root;
+        while (n != node) {
+            if (before(node, n)) {
+                n = n.left;
+            } else {
+                index += size(n.left) + 1;
+                n = n.right;
+            }
+        }
+        return index + size(node.left);
+    }
+    
+    // Listeners are called while the leaderboard lock is held: with the list index of each single insert,
+    // and with the size of each batch.
+    public void addListener(LeaderboardListener listener) {
+        listeners.add(listener);
+    }
+    
+    public void removeListener(LeaderboardListener listener) {
+        listeners.remove(listener);
+    }
+    
+    @Override
+    public synchronized QuizScore get(int index) {
+        if (index < 0 || index >= size(root)) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size(root));
+        }
+        Node n = root;
+        while (true) {
+            int leftSize = size(n.left);
+            if (index < leftSize) {
+                n = n.left;
+            } else if (index == leftSize) {
+                return n.score;
+            } else {
+                index -= leftSize + 1;
+                n = n.right;
+            }
+        }
+    }
+    
+    @Override
+    public synchronized int size() {
+        return size(root);
+    }
+    
+    // 1-based rank a player with this score would hold: one more than the number of strictly higher scores.
+    public synchronized int rankOf(int score) {
+        int higher = 0;
+        Node n = root;
+        while (n != null) {
+            if (n.score.getScore() > score) {
+                higher += size(n.left) + 1;
+                n = n.right;
+            } else {
+                n = n.left;
+            }
+        }
+        return higher + 1;
+    }
+    
+    public synchronized List<QuizScore> top(int k) {
+        List<QuizScore> out = new ArrayList<>(Math.min(k, size(root)));
+        collect(root, k, out);
+        return out;
+    }
+    
+    private static void collect(Node n, int k, List<QuizScore> out) {
+        if (n == null || out.size() >= k) return;
+        collect(n.left, k, out);
+        if (out.size() < k) {
+            out.add(n.score);
+            collect(n.right, k, out);
+        }
+    }
+}
+
+// Immutable columnar file of compacted scores. The header (counts, time range and a score histogram) is
+// tiny and read eagerly; the deflated columns (dictionary-encoded players, zigzag varint scores and
+// delta-encoded timestamps) are only read when the rows are actually needed.
+class ScoreSegment {
+    private static final int MAGIC = 0x51534547;
+    private static final int VERSION = 1;
+    private final File file;
+    private final int count;
+    private final long minTimestamp;
+    private final long maxTimestamp;
+    private final long sourceLength;
+    private final long sourceCrc;
+    private final int[] distinctScores;
+    private final int[] atOrAbove;
+    private volatile boolean loaded;
+    
+    private ScoreSegment(File file, int count, long minTimestamp, long maxTimestamp, long sourceLength,
+                         long sourceCrc, int[] distinctScores, int[] atOrAbove) {
+        this.file = file;
+        this.count = count;
+        this.minTimestamp = minTimestamp;
+        this.maxTimestamp = maxTimestamp;
+        this.sourceLength = sourceLength;
+        this.sourceCrc = sourceCrc;
+        this.distinctScores = distinctScores;
+        this.atOrAbove = atOrAbove;
+    }
+    
+    public static ScoreSegment open(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return readHeader(file, in);
+        }
+    }
+    
+    private static ScoreSegment readHeader(File file, DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not a score segment: " + file);
+        }
+        int count = in.readInt();
+        long minTimestamp = in.readLong();
+        long maxTimestamp = in.readLong();
+        long sourceLength = in.readLong();
+        long sourceCrc = in.readLong();
+        int distinct = in.readInt();
+        int[] distinctScores = new int[distinct];
+        int[] atOrAbove = new int[distinct + 1];
+        for (int i = 0; i < distinct; i++) {
+            distinctScores[i] = in.readInt();
+            atOrAbove[i] = in.readInt();
+        }
+        for (int i = distinct - 1; i >= 0; i--) {
+            atOrAbove[i] += atOrAbove[i + 1];
+        }
+        return new ScoreSegment(file, count, minTimestamp, maxTimestamp, sourceLength, sourceCrc, distinctScores, atOrAbove);
+    }
+    
+    // sourceLength and sourceCrc identify the score log bytes the rows were compacted from.
+    public static void write(File file, List<QuizScore> rows, long sourceLength, long sourceCrc) throws IOException {
+        long minTimestamp = Long.MAX_VALUE;
+        long maxTimestamp = Long.MIN_VALUE;
+        TreeMap<Integer, Integer> histogram = new TreeMap<>();
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        for (QuizScore row : rows) {
+            minTimestamp = Math.min(minTimestamp, row.getTimestamp());
+            maxTimestamp = Math.max(maxTimestamp, row.getTimestamp());
+            histogram.merge(row.getScore(), 1, Integer::sum);
+            dictionary.putIfAbsent(row.getPlayerName(), dictionary.size());
+        }
+        long first = minTimestamp;
+        long last = maxTimestamp;
+        AtomicFileStore.replace(file, header -> {
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            header.writeInt(rows.size());
+            header.writeLong(first);
+            header.writeLong(last);
+            header.writeLong(sourceLength);
+            header.writeLong(sourceCrc);
+            header.writeInt(histogram.size());
+            for (Map.Entry<Integer, Integer> entry : histogram.entrySet()) {
+                header.writeInt(entry.getKey());
+                header.writeInt(entry.getValue());
+            }
+            header.flush();
+            DeflaterOutputStream deflater = new DeflaterOutputStream(header);
+            DataOutputStream out = new DataOutputStream(deflater);
+            writeVarLong(out, dictionary.size());
+            for (String name : dictionary.keySet()) {
+                out.writeUTF(name);
+            }
+            for (QuizScore row : rows) {
+                writeVarLong(out, dictionary.get(row.getPlayerName()));
+            }
+            for (QuizScore row : rows) {
+                writeVarLong(out, zigzag(row.getScore()));
+            }
+            for (QuizScore row : rows) {
+                writeVarLong(out, row.getTotalQuestions());
+            }
+            long previous = first;
+            for (QuizScore row : rows) {
+                writeVarLong(out, zigzag(row.getTimestamp() - previous));
+                previous = row.getTimestamp();
+            }
+            // Accuracy is normally correct * 100 / total, so the correct count is stored when it reproduces the value exactly.
+            for (QuizScore row : rows) {
+                long correct = Math.round(row.getAccuracy() * row.getTotalQuestions() / 100.0);
+                if (row.getTotalQuestions() > 0 && correct >= 0 && correct * 100.0 / row.getTotalQuestions() == row.getAccuracy()) {
+                    writeVarLong(out, correct + 1);
+                } else {
+                    writeVarLong(out, 0);
+                    out.writeDouble(row.getAccuracy());
+                }
+            }
+            out.flush();
+            deflater.finish();
+        });
+    }
+    
+    public List<QuizScore> read() throws IOException {
+        try (DataInputStream headerIn = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            readHeader(file, headerIn);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(headerIn), 1 << 16));
+            String[] names = new String[(int) readVarLong(in)];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = in.readUTF();
+            }
+            int[] players = new int[count];
+            int[] scores = new int[count];
+            int[] totals = new int[count];
+            long[] timestamps = new long[count];
+            for (int i = 0; i < count; i++) players[i] = (int) readVarLong(in);
+            for (int i = 0; i < count; i++) scores[i] = (int) unzigzag(readVarLong(in));
+            for (int i = 0; i < count; i++) totals[i] = (int) readVarLong(in);
+            long previous = minTimestamp;
+            for (int i = 0; i < count; i++) {
+                previous += unzigzag(readVarLong(in));
+                timestamps[i] = previous;
+            }
+            List<QuizScore> rows = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long correct = readVarLong(in);
+                double accuracy = correct == 0 ? in.readDouble() : (correct - 1) * 100.0 / totals[i];
+                rows.add(new QuizScore(names[players[i]], scores[i], totals[i], timestamps[i], accuracy));
+            }
+            return rows;
+        }
+    }
+    
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+    
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+    
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in score segment");
+    }
+    
+    // Number of rows scoring strictly higher, answered from the header without reading any rows.
+    public int countHigher(int score) {
+        int lo = 0;
+        int hi = distinctScores.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (distinctScores[mid] <= score) lo = mid + 1; else hi = mid;
+        }
+        return atOrAbove[lo];
+    }
+    
+    public int getMaxScore() {
+        return distinctScores.length == 0 ? Integer.MIN_VALUE : distinctScores[distinctScores.length - 1];
+    }
+    
+    public File getFile() { return file; }
+    public int getCount() { return count; }
+    public long getMinTimestamp() { return minTimestamp; }
+    public long getMaxTimestamp() { return maxTimestamp; }
+    public long getSourceLength() { return sourceLength; }
+    public long getSourceCrc() { return sourceCrc; }
+    boolean isLoaded() { return loaded; }
+    void setLoaded(boolean loaded) { this.loaded = loaded; }
+}
+
+class ScoreHistory {
+    private final File directory;
+    private final List<ScoreSegment> segments = new ArrayList<>();
+    
+    public ScoreHistory(File directory) {
+        this.directory = directory;
+        File[] files = directory.listFiles((dir, name) -> name.startsWith("segment-") && name.endsWith(".seg"));
+        if (files == null) return;
+        Arrays.sort(files);
+        for (File file : files) {
+            try {
+                segments.add(ScoreSegment.open(file));
+            } catch (IOException e) {
+                System.err.println("Skipping unreadable score segment " + file + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    public synchronized List<ScoreSegment> getSegments() {
+        return new ArrayList<>(segments);
+    }
+    
+    // True when the log still starts with the bytes already compacted into the newest segment, i.e. the
+    // process stopped between writing that segment and truncating the log.
+    public synchronized boolean isCompacted(byte[] log, int offset) {
+        if (segments.isEmpty()) return false;
+        ScoreSegment latest = segments.get(segments.size() - 1);
+        long length = latest.getSourceLength();
+        if (length <= 0 || log.length - offset < length) return false;
+        CRC32 crc = new CRC32();
+        crc.update(log, offset, (int) length);
+        return crc.getValue() == latest.getSourceCrc();
+    }
+    
+    public synchronized long getCompactedLength() {
+        return segments.isEmpty() ? 0 : segments.get(segments.size() - 1).getSourceLength();
+    }
+    
+    public synchronized ScoreSegment append(List<QuizScore> rows, long sourceLength, long sourceCrc) throws IOException {
+        Files.createDirectories(directory.toPath());
+        File target = new File(directory, String.format("segment-%06d.seg", segments.size() + 1));
+        for (int next = segments.size() + 2; target.exists(); next++) {
+            target = new File(directory, String.format("segment-%06d.seg", next));
+        }
+        ScoreSegment.write(target, rows, sourceLength, sourceCrc);
+        ScoreSegment segment = ScoreSegment.open(target);
+        segment.setLoaded(true);
+        segments.add(segment);
+        return segment;
+    }
+    
+    public synchronized int unloadedCount() {
+        int count = 0;
+        for (ScoreSegment segment : segments) {
+            if (!segment.isLoaded()) count += segment.getCount();
+        }
+        return count;
+    }
+    
+    public synchronized int countHigherUnloaded(int score) {
+        int higher = 0;
+        for (ScoreSegment segment : segments) {
+            if (!segment.isLoaded()) higher += segment.countHigher(score);
+        }
+        return higher;
+    }
+}
+
+// Appends encoded records to a file from one background thread. Records queued while a write is in
+// flight are coalesced into the next write, so a burst of N results costs one write and one fsync.
+class ScoreWriter {
+    private static class PendingRecord {
+        final byte[] bytes;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        
+        PendingRecord(byte[] bytes) {
+            this.bytes = bytes;
+        }
+    }
+    
+    private final File file;
+    private final byte[] header;
+    private final LinkedBlockingQueue<PendingRecord> queue = new LinkedBlockingQueue<>();
+    private volatile CompletableFuture<Void> lastWrite = CompletableFuture.completedFuture(null);
+    
+    public ScoreWriter(File file, byte[] header) {
+        this.file = file;
+        this.header = header;
+        Thread worker = new Thread(this::run, "quiz-score-writer");
+        worker.setDaemon(true);
+        worker.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> awaitPending(5, TimeUnit.SECONDS)));
+    }
+    
+    // The returned future completes once the record has been fsynced, or exceptionally if the write failed.
+    public synchronized CompletableFuture<Void> append(byte[] record) {
+        PendingRecord pending = new PendingRecord(record);
+        queue.add(pending);
+        lastWrite = pending.done;
+        return pending.done;
+    }
+    
+    public void awaitPending(long timeout, TimeUnit unit) {
+        try {
+            lastWrite.get(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // Failures are reported through the futures returned by append.
+        }
+    }
+    
+    private void run() {
+        List<PendingRecord> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch);
+            try {
+                write(batch);
+                for (PendingRecord pending : batch) {
+                    pending.done.complete(null);
+                }
+            } catch (IOException e) {
+                System.err.println("Error saving scores: " + e.getMessage());
+                for (PendingRecord pending : batch) {
+                    pending.done.completeExceptionally(e);
+                }
+            }
+            batch.clear();
+        }
+    }
+    
+    private void write(List<PendingRecord> batch) throws IOException {
+        boolean fresh = !file.exists() || file.length() == 0;
+        try (FileOutputStream fileOut = new FileOutputStream(file, true)) {
+            BufferedOutputStream out = new BufferedOutputStream(fileOut, 1 << 16);
+            if (fresh) {
+                out.write(header);
+            }
+            for (PendingRecord pending : batch) {
+                out.write(pending.bytes);
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        }
+    }
+}
+
+class QuizManager {
+    private QuestionBank questionBank;
+    private Leaderboard leaderboard;
+    private ScoreHistory history;
+    private final RollingLeaderboard lastHour = RollingLeaderboard.lastHour();
+    private final RollingLeaderboard today = RollingLeaderboard.today(ZoneId.systemDefault());
+    private final RollingLeaderboard thisWeek = RollingLeaderboard.thisWeek(ZoneId.systemDefault(), WeekFields.of(Locale.getDefault()).getFirstDayOfWeek());
+    private final Random random = new Random();
+    private final AnswerAnalytics analytics = new AnswerAnalytics();
+    private final AdaptiveQuestionSelector selector;
+    private Thread historyLoader;
+    private static final String QUESTION_BANK_FILE = "questions.bank";
+    private static final int QUESTIONS_PER_QUIZ = 10;
+    private static final int QUESTION_CACHE_ENTRIES = 1024;
+    private static final long QUESTION_CACHE_BYTES = 1 << 20;
+    private static final String SCORES_FILE = "quiz_scores.dat";
+    private static final String HISTORY_DIR = "quiz_history";
+    private static final int SEGMENT_ROWS = 4096;
+    private static final long RECENT_MILLIS = TimeUnit.DAYS.toMillis(8);
+    private static final int SCORES_MAGIC = 0x51534352;
+    private static final int SCORES_VERSION = 3;
+    private static final short SERIALIZATION_MAGIC = (short) 0xACED;
+    private static final ScoreWriter SCORE_WRITER = new ScoreWriter(new File(SCORES_FILE),
+        ByteBuffer.allocate(8).putInt(SCORES_MAGIC).putInt(SCORES_VERSION).array());
+    
+    public QuizManager() {
+        this(openQuestionBank());
+    }
+    
+    public QuizManager(QuestionBank questionBank) {
+        this.questionBank = questionBank;
+        // Built here, off the EDT: the constructor sorts the whole bank by difficulty.
+        selector = new AdaptiveQuestionSelector(questionBank);
+        leaderboard = new Leaderboard();
+        loadScores();
+    }
+    
+    private static QuestionBank openQuestionBank() {
+        File file = new File(QUESTION_BANK_FILE);
+        if (file.exists()) {
+            try {
+                return new CachedQuestionBank(FileQuestionBank.open(file), QUESTION_CACHE_ENTRIES, QUESTION_CACHE_BYTES);
+            } catch (IOException e) {
+                System.err.println("Error opening question bank: " + e.getMessage());
+            }
+        }
+        List<Question> questions = new ArrayList<>();
+        initializeQuestions(questions);
+        return new InMemoryQuestionBank(questions);
+    }
+    
+    private static void initializeQuestions(List<Question> questions) {
+        questions.add(new Question(
+            "What is the size of int in Java?",
+            new String[]{"16 bits", "32 bits", "64 bits", "8 bits"},
+            1, 15
+        ));
+        
+        questions.add(new Question(
+            "Which keyword is used for inheritance in Java?",
+            new String[]{"implements", "extends", "inherits", "super"},
+            1, 15
+        ));
+        
+        questions.add(new Question(
+            "What is the default value of boolean in Java?",
+            new String[]{"true", "false", "null", "0"},
+            1, 12
+        ));
+        
+        questions.add(new Question(
+            "Which collection does not allow duplicates?",
+            new String[]{"ArrayList", "LinkedList", "HashSet", "HashMap"},
+            2, 15
+        ));
+        
+        questions.add(new Question(
+            "What is the parent class of all classes in Java?",
+            new String[]{"System", "Object", "Class", "Main"},
+            1, 12
+        ));
+        
+        questions.add(new Question(
+            "Which operator is used to compare two values?",
+            new String[]{"=", "==", "equals", "compare"},
+            1, 10
+        ));
+        
+        questions.add(new Question(
+            "What does JVM stand for?",
+            new String[]{"Java Virtual Machine", "Java Visual Method", "Java Variable Memory", "Java Version Manager"},
+            0, 15
+        ));
+        
+        questions.add(new Question(
+            "Which loop is guaranteed to execute at least once?",
+            new String[]{"for", "while", "do-while", "foreach"},
+            2, 12
+        ));
+        
+        questions.add(new Question(
+            "What is the output of 5 / 2 in Java?",
+            new String[]{"2.5", "2", "3", "2.0"},
+            1, 15
+        ));
+        
+        questions.add(new Question(
+            "Which access modifier is most restrictive?",
+            new String[]{"public", "protected", "private", "default"},
+            2, 12
+        ));
+    }
+    
+    public List<Question> getShuffledQuestions() {
+        return questionBank.sample(QUESTIONS_PER_QUIZ, null, null, random);
+    }
+    
+    public List<Question> getQuestions(int count, String topic, Integer difficulty) {
+        return questionBank.sample(count, topic, difficulty, random);
+    }
+    
+    public QuestionBank getQuestionBank() {
+        return questionBank;
+    }
+    
+    public QuizSession newSession(String playerName, QuizSessionListener listener) {
+        AdaptiveQuiz quiz = selector.newQuiz(QUESTIONS_PER_QUIZ);
+        return new QuizSession(playerName, quiz, listener, event -> {
+            analytics.onAnswer(event);
+            quiz.onAnswer(event);
+        });
+    }
+    
+    public AnswerAnalytics getAnalytics() {
+        return analytics;
+    }
+    
+    private void record(QuizScore score) {
+        long now = System.currentTimeMillis();
+        leaderboard.add(score);
+        lastHour.add(score, now);
+        today.add(score, now);
+        thisWeek.add(score, now);
+    }
+    
+    // The score is ranked immediately; the returned future completes once it is durably on disk.
+    public CompletableFuture<Void> saveScore(QuizScore score) {
+        record(score);
+        return SCORE_WRITER.append(AtomicFileStore.frame(encodeScore(score)));
+    }
+    
+    private static byte[] encodeScore(QuizScore score) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try {
+            writeScore(new DataOutputStream(bytes), score);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    // The log only holds scores that have not been compacted into a history segment yet.
+    private static void writeLog(File file, List<QuizScore> tail) throws IOException {
+        AtomicFileStore.replace(file, out -> {
+            out.writeInt(SCORES_MAGIC);
+            out.writeInt(SCORES_VERSION);
+            for (QuizScore score : tail) {
+                AtomicFileStore.writeFrame(out, encodeScore(score));
+            }
+        });
+    }
+    
+    private void compactLog(File file, List<QuizScore> tail) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (QuizScore score : tail) {
+            bytes.write(AtomicFileStore.frame(encodeScore(score)));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        history.append(tail, bytes.size(), crc.getValue());
+        writeLog(file, Collections.emptyList());
+    }
+    
+    private static void writeScore(DataOutputStream out, QuizScore score) throws IOException {
+        out.writeUTF(score.getPlayerName());
+        out.writeInt(score.getScore());
+        out.writeInt(score.getTotalQuestions());
+        out.writeLong(score.getTimestamp());
+        out.writeDouble(score.getAccuracy());
+    }
+    
+    // Version 1 records stored the formatted date instead of the epoch timestamp; version 3 wraps the
+    // version 2 record in a checksummed frame.
+    private static QuizScore readScore(DataInputStream in, int version) throws IOException {
+        String playerName = in.readUTF();
+        int score = in.readInt();
+        int totalQuestions = in.readInt();
+        long timestamp = version == 1 ? QuizScore.parseDate(in.readUTF()) : in.readLong();
+        double accuracy = in.readDouble();
+        return new QuizScore(playerName, score, totalQuestions, timestamp, accuracy);
+    }
+    
+    // Only segments that can still hold scores for the rolling boards are read at startup; older history
+    // is counted from segment headers and read the first time something needs its rows.
+    private void loadScores() {
+        SCORE_WRITER.awaitPending(5, TimeUnit.SECONDS);
+        history = new ScoreHistory(new File(HISTORY_DIR));
+        long recentCutoff = System.currentTimeMillis() - RECENT_MILLIS;
+        for (ScoreSegment segment : history.getSegments()) {
+            if (segment.getMaxTimestamp() >= recentCutoff) {
+                loadSegment(segment);
+            }
+        }
+        File file = new File(SCORES_FILE);
+        if (!file.exists() || file.length() == 0) {
+            return;
+        }
+        List<QuizScore> tail = new ArrayList<>();
+        boolean rewrite = false;
+        try {
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (bytes.length >= 2 && (short) ((bytes[0] << 8) | (bytes[1] & 0xFF)) == SERIALIZATION_MAGIC) {
+                tail = migrateLegacyScores(in);
+                rewrite = true;
+            } else {
+                int version = in.readInt() == SCORES_MAGIC ? in.readInt() : -1;
+                if (version < 1 || version > SCORES_VERSION) {
+                    throw new IOException("Unrecognized scores file");
+                }
+                int offset = 8;
+                if (version >= 2 && history.isCompacted(bytes, offset)) {
+                    offset += (int) history.getCompactedLength();
+                    rewrite = true;
+                }
+                rewrite |= version != SCORES_VERSION;
+                if (version == SCORES_VERSION) {
+                    AtomicFileStore.Frames frames = AtomicFileStore.readFrames(bytes, offset);
+                    for (byte[] record : frames.records) {
+                        tail.add(readScore(new DataInputStream(new ByteArrayInputStream(record)), version));
+                    }
+                    if (frames.isTruncated()) {
+                        System.err.println("Recovered " + frames.records.size() + " scores; discarded "
+                                           + (frames.length - frames.validEnd) + " damaged trailing bytes");
+                        rewrite = true;
+                    }
+                } else {
+                    in.skipBytes(offset - 8);
+                    while (true) {
+                        try {
+                            tail.add(readScore(in, version));
+                        } catch (EOFException e) {
+                            break;
+                        }
+                    }
+                }
+            }
+            for (QuizScore score : tail) {
+                record(score);
+            }
+            if (rewrite) {
+                writeLog(file, tail);
+            }
+            if (tail.size() >= SEGMENT_ROWS) {
+                compactLog(file, tail);
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("Error loading scores: " + e.getMessage());
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private List<QuizScore> migrateLegacyScores(InputStream in) throws IOException, ClassNotFoundException {
+        ArrayList<QuizScore> legacy = (ArrayList<QuizScore>) new ObjectInputStream(in).readObject();
+        List<QuizScore> scores = new ArrayList<>();
+        if (legacy != null) {
+            for (QuizScore score : legacy) {
+                scores.add(score.withTimestamp());
+            }
+        }
+        return scores;
+    }
+    
+    // The segment is read and decoded without the history lock, which ranking takes on the EDT; the lock only
+    // covers recording the rows, so a rank never counts a segment both as loaded and as unread.
+    private void loadSegment(ScoreSegment segment) {
+        if (segment.isLoaded()) return;
+        List<QuizScore> rows;
+        try {
+            rows = segment.read();
+        } catch (IOException e) {
+            System.err.println("Error reading score segment " + segment.getFile() + ": " + e.getMessage());
+            rows = Collections.emptyList();
+        }
+        synchronized (history) {
+            if (segment.isLoaded()) return;
+            long now = System.currentTimeMillis();
+            leaderboard.addAll(rows);
+            for (QuizScore score : rows) {
+                lastHour.add(score, now);
+                today.add(score, now);
+                thisWeek.add(score, now);
+            }
+            segment.setLoaded(true);
+        }
+    }
+    
+    // The all-time list holds only what has been read so far; see loadHistoryInBackground.
+    public Leaderboard getLeaderboard() {
+        return leaderboard;
+    }
+    
+    // Reads every remaining history segment off the calling thread. Rows reach the leaderboard, and its
+    // listeners, one segment at a time, so a table showing it fills in without blocking the UI.
+    public synchronized void loadHistoryInBackground() {
+        if (historyLoader != null || history.unloadedCount() == 0) return;
+        historyLoader = new Thread(() -> {
+            for (ScoreSegment segment : history.getSegments()) {
+                loadSegment(segment);
+            }
+        }, "quiz-history-loader");
+        historyLoader.setDaemon(true);
+        historyLoader.start();
+    }
+    
+    public int getRank(int score) {
+        synchronized (history) {
+            return leaderboard.rankOf(score) + history.countHigherUnloaded(score);
+        }
+    }
+    
+    // Loads history segments, best first, until none left unread could place in the top k.
+    private List<QuizScore> allTimeTop(int k) {
+        while (true) {
+            List<QuizScore> top = leaderboard.top(k);
+            int threshold = top.size() < k ? Integer.MIN_VALUE : top.get(k - 1).getScore();
+            ScoreSegment best = null;
+            for (ScoreSegment segment : history.getSegments()) {
+                if (!segment.isLoaded() && segment.getMaxScore() > threshold
+                        && (best == null || segment.getMaxScore() > best.getMaxScore())) {
+                    best = segment;
+                }
+            }
+            if (best == null) {
+                return top;
+            }
+            loadSegment(best);
+        }
+    }
+    
+    private RollingLeaderboard rolling(LeaderboardPeriod period) {
+        switch (period) {
+            case LAST_HOUR: return lastHour;
+            case TODAY: return today;
+            case THIS_WEEK: return thisWeek;
+            default: return null;
+        }
+    }
+    
+    public List<QuizScore> getTopScores(LeaderboardPeriod period, int k) {
+        RollingLeaderboard board = rolling(period);
+        return board == null ? allTimeTop(k) : board.top(k, System.currentTimeMillis());
+    }
+    
+    public int getRank(LeaderboardPeriod period, int score) {
+        RollingLeaderboard board = rolling(period);
+        return board == null ? getRank(score) : board.rankOf(score, System.currentTimeMillis());
+    }
+    
+    public int getScoreCount(LeaderboardPeriod period) {
+        RollingLeaderboard board = rolling(period);
+        if (board == null) {
+            synchronized (history) {
+                return leaderboard.size() + history.unloadedCount();
+            }
+        }
+        return board.size(System.currentTimeMillis());
+    }
+}
+
+class TimingWheel {
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+    
+    class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private long remainingRounds;
+        private Timeout prev;
+        private Timeout next;
+        private boolean linked;
+        private int bucketIndex;
+        
+        Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+        
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) {
+                return false;
+            }
+            cancelled.add(this);
+            return true;
+        }
+    }
+    
+    private final long tickNanos;
+    private final int ticksPerSecond;
+    private final int mask;
+    private final Timeout[] heads;
+    private final long startNanos = System.nanoTime();
+    private final ConcurrentLinkedQueue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final CopyOnWriteArrayList<Runnable> clockListeners = new CopyOnWriteArrayList<>();
+    private long tick;
+    
+    public TimingWheel(long tickMillis, int wheelSize) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Wheel size must be a power of two: " + wheelSize);
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.ticksPerSecond = (int) Math.max(1, 1000 / tickMillis);
+        this.mask = wheelSize - 1;
+        this.heads = new Timeout[wheelSize];
+        Thread worker = new Thread(this::run, "quiz-timing-wheel");
+        worker.setDaemon(true);
+        worker.start();
+    }
+    
+    public Timeout schedule(Runnable task, long delayMillis) {
+        long deadline = System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        Timeout timeout = new Timeout(task, deadline);
+        pending.add(timeout);
+        return timeout;
+    }
+    
+    // Clock listeners run once per second on the wheel thread; they should only hand work off (e.g. a repaint).
+    public void addClockListener(Runnable listener) {
+        clockListeners.add(listener);
+    }
+    
+    public void removeClockListener(Runnable listener) {
+        clockListeners.remove(listener);
+    }
+    
+    private void run() {
+        while (true) {
+            long wakeAt = (tick + 1) * tickNanos;
+            long sleepNanos = wakeAt - (System.nanoTime() - startNanos);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                continue;
+            }
+            removeCancelled();
+            transferPending();
+            expireBucket((int) (tick & mask));
+            tick++;
+            if (tick % ticksPerSecond == 0) {
+                for (Runnable listener : clockListeners) {
+                    listener.run();
+                }
+            }
+        }
+    }
+    
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.state.get() != PENDING) {
+                continue;
+            }
+            long target = Math.max(timeout.deadline / tickNanos, tick);
+            timeout.remainingRounds = (target - tick) / heads.length;
+            int index = (int) (target & mask);
+            timeout.linked = true;
+            timeout.bucketIndex = index;
+            timeout.next = heads[index];
+            if (heads[index] != null) {
+                heads[index].prev = timeout;
+            }
+            heads[index] = timeout;
+        }
+    }
+    
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            unlink(timeout);
+        }
+    }
+    
+    private void unlink(Timeout timeout) {
+        if (!timeout.linked) {
+            return;
+        }
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            heads[timeout.bucketIndex] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.linked = false;
+    }
+    
+    private void expireBucket(int index) {
+        Timeout timeout = heads[index];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.remainingRounds <= 0) {
+                unlink(timeout);
+                if (timeout.state.compareAndSet(PENDING, EXPIRED)) {
+                    try {
+                        timeout.task.run();
+                    } catch (RuntimeException e) {
+                        System.err.println("Timer task failed: " + e);
+                    }
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+            timeout = next;
+        }
+    }
+}
+
+class AnswerEvent {
+    private final String playerName;
+    private final Question question;
+    private final int questionIndex;
+    private final boolean correct;
+    private final boolean timedOut;
+    private final long responseNanos;
+    private final long timestamp;
+    
+    public AnswerEvent(String playerName, Question question, int questionIndex, boolean correct,
+                       boolean timedOut, long responseNanos, long timestamp) {
+        this.playerName = playerName;
+        this.question = question;
+        this.questionIndex = questionIndex;
+        this.correct = correct;
+        this.timedOut = timedOut;
+        this.responseNanos = responseNanos;
+        this.timestamp = timestamp;
+    }
+    
+    public String getPlayerName() { return playerName; }
+    public Question getQuestion() { return question; }
+    public int getQuestionIndex() { return questionIndex; }
+    public boolean isCorrect() { return correct; }
+    public boolean isTimedOut() { return timedOut; }
+    public long getResponseNanos() { return responseNanos; }
+    public long getTimestamp() { return timestamp; }
+}
+
+interface AnswerListener {
+    void onAnswer(AnswerEvent event);
+}
+
+// Log-linear buckets in the style of HdrHistogram: 32 linear sub-buckets per power of two keep every
+// recorded value within ~3% while the whole range of a long fits in a fixed array.
+class LogLinearHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(0, value);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+    
+    // Highest value that maps to the bucket.
+    static long highestValueAt(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long low = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        return low + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+    
+    public void record(long value) {
+        counts.incrementAndGet(indexOf(value));
+        total.increment();
+        sum.add(value);
+    }
+    
+    public long getCount() {
+        return total.sum();
+    }
+    
+    public double getMean() {
+        long count = total.sum();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+    
+    public long getPercentile(double percentile) {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return highestValueAt(i);
+            }
+        }
+        return highestValueAt(counts.length() - 1);
+    }
+}
+
+class CountMinSketch {
+    private final int depth;
+    private final int mask;
+    private final AtomicLongArray table;
+    
+    public CountMinSketch(int depth, int width) {
+        if (Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("Width must be a power of two: " + width);
+        }
+        this.depth = depth;
+        this.mask = width - 1;
+        this.table = new AtomicLongArray(depth * width);
+    }
+    
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+    
+    // Row i hashes with h1 + i * h2 (Kirsch-Mitzenmacher), so one key costs two mixes regardless of depth.
+    private int slot(long h1, long h2, int row) {
+        return row * (mask + 1) + (int) ((h1 + row * h2) & mask);
+    }
+    
+    // Every row is incremented independently, so concurrent adds never lose counts.
+    public void add(Object key, long count) {
+        long h1 = mix(key.hashCode());
+        long h2 = mix(h1) | 1;
+        for (int row = 0; row < depth; row++) {
+            table.addAndGet(slot(h1, h2, row), count);
+        }
+    }
+    
+    public long estimate(Object key) {
+        long h1 = mix(key.hashCode());
+        return estimate(h1, mix(h1) | 1);
+    }
+    
+    private long estimate(long h1, long h2) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, table.get(slot(h1, h2, row)));
+        }
+        return min;
+    }
+}
+
+// Streaming aggregation of answer events. Every structure is fixed-size or evicted over time, and
+// recording an answer is a handful of atomic increments, so it runs inline on the answering thread.
+class AnswerAnalytics implements AnswerListener {
+    private static final int WINDOW_MINUTES = 60;
+    private static final int EVICT_INTERVAL = 4096;
+    
+    private static class PlayerWindow {
+        private final long[] minutes = new long[WINDOW_MINUTES];
+        private final int[] answered = new int[WINDOW_MINUTES];
+        private final int[] correct = new int[WINDOW_MINUTES];
+        private long lastMinute;
+        
+        synchronized void record(long minute, boolean isCorrect) {
+            int slot = (int) (minute % WINDOW_MINUTES);
+            if (minutes[slot] != minute) {
+                minutes[slot] = minute;
+                answered[slot] = 0;
+                correct[slot] = 0;
+            }
+            answered[slot]++;
+            if (isCorrect) correct[slot]++;
+            lastMinute = Math.max(lastMinute, minute);
+        }
+        
+        synchronized double accuracy(long nowMinute, int window) {
+            int total = 0;
+            int right = 0;
+            for (int slot = 0; slot < WINDOW_MINUTES; slot++) {
+                if (minutes[slot] > nowMinute - window && minutes[slot] <= nowMinute) {
+                    total += answered[slot];
+                    right += correct[slot];
+                }
+            }
+            return total == 0 ? Double.NaN : right * 100.0 / total;
+        }
+        
+        synchronized boolean idleSince(long minute) {
+            return lastMinute < minute;
+        }
+    }
+    
+    private final CountMinSketch attempts = new CountMinSketch(4, 16384);
+    private final CountMinSketch corrects = new CountMinSketch(4, 16384);
+    private final LogLinearHistogram responseTimes = new LogLinearHistogram();
+    private final ConcurrentHashMap<String, LogLinearHistogram> topicResponseTimes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, PlayerWindow> players = new ConcurrentHashMap<>();
+    private final AtomicLong events = new AtomicLong();
+    
+    @Override
+    public void onAnswer(AnswerEvent event) {
+        String key = event.getQuestion().getQuestion();
+        attempts.add(key, 1);
+        if (event.isCorrect()) {
+            corrects.add(key, 1);
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(event.getResponseNanos());
+        responseTimes.record(micros);
+        topicResponseTimes.computeIfAbsent(event.getQuestion().getTopic(), t -> new LogLinearHistogram()).record(micros);
+        long minute = TimeUnit.MILLISECONDS.toMinutes(event.getTimestamp());
+        players.computeIfAbsent(event.getPlayerName(), p -> new PlayerWindow()).record(minute, event.isCorrect());
+        if (events.incrementAndGet() % EVICT_INTERVAL == 0) {
+            players.values().removeIf(window -> window.idleSince(minute - WINDOW_MINUTES));
+        }
+    }
+    
+    public long getTotalAnswers() {
+        return events.get();
+    }
+    
+    // Estimates may overcount under hash collisions but never undercount.
+    public long getQuestionAttempts(Question question) {
+        return attempts.estimate(question.getQuestion());
+    }
+    
+    public double getQuestionAccuracy(Question question) {
+        long attempted = attempts.estimate(question.getQuestion());
+        if (attempted == 0) {
+            return Double.NaN;
+        }
+        return Math.min(100.0, corrects.estimate(question.getQuestion()) * 100.0 / attempted);
+    }
+    
+    // Response times are recorded in microseconds.
+    public LogLinearHistogram getResponseTimes() {
+        return responseTimes;
+    }
+    
+    public LogLinearHistogram getResponseTimes(String topic) {
+        return topicResponseTimes.get(topic);
+    }
+    
+    public double getPlayerAccuracy(String playerName, int minutes) {
+        PlayerWindow window = players.get(playerName);
+        long now = TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis());
+        return window == null ? Double.NaN : window.accuracy(now, Math.min(minutes, WINDOW_MINUTES));
+    }
+}
+
+class FenwickTree {
+    private final double[] tree;
+    
+    public FenwickTree(int size) {
+        tree = new double[size + 1];
+    }
+    
+    // Builds in O(n) from per-position weights.
+    public FenwickTree(double[] weights) {
+        tree = new double[weights.length + 1];
+        for (int i = 1; i <= weights.length; i++) {
+            tree[i] += weights[i - 1];
+            int parent = i + (i & -i);
+            if (parent < tree.length) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+    
+    public void add(int index, double delta) {
+        for (int i = index + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+    
+    // Sum of weights at positions [0, index).
+    public double prefix(int index) {
+        double sum = 0;
+        for (int i = index; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+    
+    // Smallest position whose inclusive prefix sum exceeds target.
+    public int find(double target) {
+        int position = 0;
+        for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next < tree.length && tree[next] <= target) {
+                position = next;
+                target -= tree[next];
+            }
+        }
+        return Math.min(position, tree.length - 2);
+    }
+}
+
+// Rasch-style adaptive selection. Each question has a difficulty b on the logit scale, blended from its
+// bank difficulty and observed correct rate; questions are kept sorted by b with exposure weights in a
+// Fenwick tree, so a pick near the player's ability is two binary searches and an O(log n) weighted draw.
+class AdaptiveQuestionSelector {
+    private static final double PRIOR_ANSWERS = 10;
+    private static final int RECALIBRATE_INTERVAL = 1024;
+    private static final int MAX_ATTEMPTS = 8;
+    // Answers are recorded on latency-sensitive threads (the server's selector loop), so the sort runs here.
+    private static final ExecutorService RECALIBRATOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "quiz-recalibrator");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private final QuestionBank bank;
+    private final Random random = new Random();
+    private final int[] attempts;
+    private final int[] corrects;
+    private final int[] exposures;
+    private int[] order;
+    private double[] sortedDifficulty;
+    private int[] positionOf;
+    private FenwickTree weights;
+    private int answersSinceCalibration;
+    
+    public AdaptiveQuestionSelector(QuestionBank bank) {
+        this.bank = bank;
+        int n = bank.size();
+        attempts = new int[n];
+        corrects = new int[n];
+        exposures = new int[n];
+        recalibrate();
+    }
+    
+    private double difficulty(int index, int[] attempts, int[] corrects) {
+        double prior = (bank.getDifficulty(index) - 3) * 0.75;
+        int answered = attempts[index];
+        if (answered == 0) {
+            return prior;
+        }
+        double p = (corrects[index] + 1.0) / (answered + 2.0);
+        double observed = Math.log((1 - p) / p);
+        return (PRIOR_ANSWERS * prior + answered * observed) / (PRIOR_ANSWERS + answered);
+    }
+    
+    private static double exposureWeight(int exposures) {
+        return 1.0 / (1 + exposures);
+    }
+    
+    // Re-sorts by difficulty from a copy of the counts; only the final swap holds the lock, so picks keep
+    // running against the previous order while a large bank is being sorted.
+    private void recalibrate() {
+        int[] attemptsCopy;
+        int[] correctsCopy;
+        synchronized (this) {
+            attemptsCopy = attempts.clone();
+            correctsCopy = corrects.clone();
+        }
+        int n = attemptsCopy.length;
+        double[] difficulty = new double[n];
+        Integer[] sorted = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            difficulty[i] = difficulty(i, attemptsCopy, correctsCopy);
+            sorted[i] = i;
+        }
+        Arrays.sort(sorted, (a, b) -> Double.compare(difficulty[a], difficulty[b]));
+        int[] newOrder = new int[n];
+        double[] newSortedDifficulty = new double[n];
+        int[] newPositionOf = new int[n];
+        for (int p = 0; p < n; p++) {
+            newOrder[p] = sorted[p];
+            newSortedDifficulty[p] = difficulty[sorted[p]];
+            newPositionOf[sorted[p]] = p;
+        }
+        synchronized (this) {
+            double[] w = new double[n];
+            for (int p = 0; p < n; p++) {
+                w[p] = exposureWeight(exposures[newOrder[p]]);
+            }
+            order = newOrder;
+            sortedDifficulty = newSortedDifficulty;
+            positionOf = newPositionOf;
+            weights = new FenwickTree(w);
+        }
+    }
+    
+    private int lowerBound(double value) {
+        int lo = 0;
+        int hi = sortedDifficulty.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sortedDifficulty[mid] < value) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+    
+    // Draws a question whose difficulty is near the ability estimate, widening the window until one is free.
+    public synchronized int pick(double ability, Set<Integer> exclude) {
+        int n = order.length;
+        if (exclude.size() >= n) {
+            return -1;
+        }
+        for (double radius = 0.5; ; radius *= 2) {
+            int lo = lowerBound(ability - radius);
+            int hi = lowerBound(ability + radius);
+            if (lo == 0 && hi == n) {
+                radius = Double.MAX_VALUE;
+            }
+            double base = weights.prefix(lo);
+            double span = weights.prefix(hi) - base;
+            for (int attempt = 0; attempt < MAX_ATTEMPTS && span > 0; attempt++) {
+                int index = order[Math.max(lo, Math.min(hi - 1, weights.find(base + random.nextDouble() * span)))];
+                if (!exclude.contains(index)) {
+                    expose(index);
+                    return index;
+                }
+            }
+            if (radius == Double.MAX_VALUE) {
+                for (int p = 0; p < n; p++) {
+                    if (!exclude.contains(order[p])) {
+                        expose(order[p]);
+                        return order[p];
+                    }
+                }
+            }
+        }
+    }
+    
+    private void expose(int index) {
+        exposures[index]++;
+        weights.add(positionOf[index], exposureWeight(exposures[index]) - exposureWeight(exposures[index] - 1));
+    }
+    
+    public void record(int index, boolean correct) {
+        boolean due;
+        synchronized (this) {
+            attempts[index]++;
+            if (correct) corrects[index]++;
+            // Reset on scheduling, so a recalibration that fails is simply retried after the next interval.
+            due = ++answersSinceCalibration >= Math.max(RECALIBRATE_INTERVAL, attempts.length / 4);
+            if (due) {
+                answersSinceCalibration = 0;
+            }
+        }
+        if (due) {
+            RECALIBRATOR.execute(this::recalibrate);
+        }
+    }
+    
+    public synchronized double getDifficulty(int index) {
+        return difficulty(index, attempts, corrects);
+    }
+    
+    public AdaptiveQuiz newQuiz(int count) {
+        return new AdaptiveQuiz(this, bank, Math.min(count, bank.size()));
+    }
+}
+
+// A quiz whose next question is chosen only when the session first asks for it, using the
+// player's answers so far. Ability is the mean difficulty answered plus the logit of smoothed accuracy.
+class AdaptiveQuiz extends AbstractList<Question> implements AnswerListener {
+    private final AdaptiveQuestionSelector selector;
+    private final QuestionBank bank;
+    private final int count;
+    private final List<Question> picked = new ArrayList<>();
+    private final List<Integer> pickedIndices = new ArrayList<>();
+    private final Set<Integer> asked = new HashSet<>();
+    private int answered;
+    private int correct;
+    private double difficultySum;
+    
+    AdaptiveQuiz(AdaptiveQuestionSelector selector, QuestionBank bank, int count) {
+        this.selector = selector;
+        this.bank = bank;
+        this.count = count;
     }
     
-    public String getQuestion() { return question; }
-    public String[] getOptions() { return options; }
-    public int getCorrectAnswer() { return correctAnswer; }
-    public int getTimeLimit() { return timeLimit; }
+    public synchronized double getAbility() {
+        if (answered == 0) {
+            return 0;
+        }
+        double p = (correct + 0.5) / (answered + 1.0);
+        return difficultySum / answered + Math.log(p / (1 - p));
+    }
+    
+    @Override
+    public synchronized Question get(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+        while (picked.size() <= index) {
+            int next = selector.pick(getAbility(), asked);
+            asked.add(next);
+            pickedIndices.add(next);
+            picked.add(bank.get(next));
+        }
+        return picked.get(index);
+    }
+    
+    @Override
+    public int size() {
+        return count;
+    }
+    
+    @Override
+    public synchronized void onAnswer(AnswerEvent event) {
+        int index = pickedIndices.get(event.getQuestionIndex());
+        difficultySum += selector.getDifficulty(index);
+        answered++;
+        if (event.isCorrect()) correct++;
+        selector.record(index, event.isCorrect());
+    }
 }
 
-class QuizScore implements Serializable {
-    private String playerName;
+interface QuizSessionListener {
+    void onTimeout(QuizSession session, int questionIndex);
+}
+
+class QuizSession {
+    static final TimingWheel DEADLINES = new TimingWheel(100, 512);
+    
+    private final String playerName;
+    private final List<Question> questions;
+    private final QuizSessionListener listener;
+    private final AnswerListener answerListener;
+    private int currentIndex = -1;
     private int score;
-    private int totalQuestions;
-    private String date;
-    private double accuracy;
+    private int correctAnswers;
+    private int wrongAnswers;
+    private boolean answered;
+    private long shownNanos;
+    private long deadlineNanos;
+    private TimingWheel.Timeout deadline;
     
-    public QuizScore(String playerName, int score, int totalQuestions, String date, double accuracy) {
+    public QuizSession(String playerName, List<Question> questions, QuizSessionListener listener) {
+        this(playerName, questions, listener, null);
+    }
+    
+    public QuizSession(String playerName, List<Question> questions, QuizSessionListener listener, AnswerListener answerListener) {
         this.playerName = playerName;
-        this.score = score;
-        this.totalQuestions = totalQuestions;
-        this.date = date;
-        this.accuracy = accuracy;
+        this.questions = questions;
+        this.listener = listener;
+        this.answerListener = answerListener;
+    }
+    
+    public synchronized boolean next() {
+        cancelDeadline();
+        currentIndex++;
+        if (currentIndex >= questions.size()) {
+            return false;
+        }
+        answered = false;
+        int questionIndex = currentIndex;
+        long limitMillis = questions.get(questionIndex).getTimeLimit() * 1000L;
+        shownNanos = System.nanoTime();
+        deadlineNanos = shownNanos + TimeUnit.MILLISECONDS.toNanos(limitMillis);
+        deadline = DEADLINES.schedule(() -> expire(questionIndex), limitMillis);
+        return true;
     }
     
+    // Returns the points awarded, or 0 if the question was already closed by a timeout or earlier answer.
+    public synchronized int submit(int option) {
+        if (answered || isFinished()) {
+            return 0;
+        }
+        cancelDeadline();
+        answered = true;
+        boolean correct = option == getCurrentQuestion().getCorrectAnswer();
+        emit(correct, false);
+        if (correct) {
+            correctAnswers++;
+            score += 4;
+            return 4;
+        }
+        wrongAnswers++;
+        score -= 1;
+        return -1;
+    }
+    
+    private void emit(boolean correct, boolean timedOut) {
+        if (answerListener != null) {
+            answerListener.onAnswer(new AnswerEvent(playerName, questions.get(currentIndex), currentIndex, correct,
+                                                    timedOut, System.nanoTime() - shownNanos, System.currentTimeMillis()));
+        }
+    }
+    
+    private void expire(int questionIndex) {
+        synchronized (this) {
+            if (questionIndex != currentIndex || answered) {
+                return;
+            }
+            answered = true;
+            wrongAnswers++;
+            score -= 1;
+            emit(false, true);
+        }
+        if (listener != null) {
+            listener.onTimeout(this, questionIndex);
+        }
+    }
+    
+    public synchronized void finish() {
+        cancelDeadline();
+        currentIndex = questions.size();
+    }
+    
+    private void cancelDeadline() {
+        if (deadline != null) {
+            deadline.cancel();
+            deadline = null;
+        }
+    }
+    
+    public synchronized int getTimeRemaining() {
+        if (answered || isFinished()) return 0;
+        long remaining = deadlineNanos - System.nanoTime();
+        return remaining <= 0 ? 0 : (int) ((TimeUnit.NANOSECONDS.toMillis(remaining) + 999) / 1000);
+    }
+    
+    public synchronized Question getCurrentQuestion() {
+        return isFinished() || currentIndex < 0 ? null : questions.get(currentIndex);
+    }
+    
+    public synchronized boolean isFinished() {
+        return currentIndex >= questions.size();
+    }
+    
+    public synchronized boolean isAnswered() { return answered; }
+    public synchronized int getCurrentIndex() { return currentIndex; }
+    public int getQuestionCount() { return questions.size(); }
     public String getPlayerName() { return playerName; }
-    public int getScore() { return score; }
-    public int getTotalQuestions() { return totalQuestions; }
-    public String getDate() { return date; }
-    public double getAccuracy() { return accuracy; }
+    public synchronized int getScore() { return score; }
+    public synchronized int getCorrectAnswers() { return correctAnswers; }
+    public synchronized int getWrongAnswers() { return wrongAnswers; }
+    
+    public synchronized double getAccuracy() {
+        return questions.isEmpty() ? 0 : (correctAnswers * 100.0) / questions.size();
+    }
+    
+    public synchronized QuizScore toQuizScore(long timestamp) {
+        return new QuizScore(playerName, score, questions.size(), timestamp, getAccuracy());
+    }
 }
 
-class QuizManager {
-    private List<Question> questions;
-    private List<QuizScore> leaderboard;
-    private static final String SCORES_FILE = "quiz_scores.dat";
+// Headless quiz server on localhost speaking a newline-delimited text protocol:
+//   START <name>             -> Q <index> <seconds> <question>\t<option>...   (or END when there are no questions)
+//   ANSWER <index> <option>  -> R <points> <score>, then the next Q or END <score> <correct> <wrong> <rank>
+//   QUIT
+// When a question times out the server pushes T <index> <score> followed by the next Q or END.
+class QuizServer implements Closeable {
+    private static final int MAX_LINE = 1024;
+    private final QuizManager quizManager;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
     
-    public QuizManager() {
-        questions = new ArrayList<>();
-        leaderboard = new ArrayList<>();
-        initializeQuestions();
-        loadScores();
+    public QuizServer(QuizManager quizManager, int port) throws IOException {
+        this.quizManager = quizManager;
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
     }
     
-    private void initializeQuestions() {
-        questions.add(new Question(
-            "What is the size of int in Java?",
-            new String[]{"16 bits", "32 bits", "64 bits", "8 bits"},
-            1, 15
-        ));
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+    
+    public void start() {
+        new Thread(this::run, "quiz-server").start();
+    }
+    
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+    
+    // Timeouts fire on the timing wheel thread; everything that touches a connection runs on the selector thread.
+    private void post(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+    
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) connection.read();
+                        if (key.isValid() && key.isWritable()) connection.flush();
+                    } catch (IOException e) {
+                        connection.close();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Quiz server stopped: " + e.getMessage());
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection) {
+                    ((Connection) key.attachment()).close();
+                }
+            }
+            try {
+                server.close();
+                selector.close();
+            } catch (IOException e) {
+                System.err.println("Error closing quiz server: " + e.getMessage());
+            }
+        }
+    }
+    
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key));
+    }
+    
+    private class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final ByteBuffer in = ByteBuffer.allocate(MAX_LINE);
+        private final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+        private QuizSession session;
+        
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
         
-        questions.add(new Question(
-            "Which keyword is used for inheritance in Java?",
-            new String[]{"implements", "extends", "inherits", "super"},
-            1, 15
-        ));
+        void read() throws IOException {
+            if (channel.read(in) < 0) {
+                close();
+                return;
+            }
+            in.flip();
+            int start = 0;
+            for (int i = in.position(); i < in.limit(); i++) {
+                if (in.get(i) == '\n') {
+                    handle(new String(in.array(), start, i - start, StandardCharsets.UTF_8).trim());
+                    start = i + 1;
+                    if (!key.isValid()) return;
+                }
+            }
+            in.position(start);
+            in.compact();
+            if (!in.hasRemaining()) {
+                send("ERR line too long");
+                close();
+                return;
+            }
+            flush();
+        }
         
-        questions.add(new Question(
-            "What is the default value of boolean in Java?",
-            new String[]{"true", "false", "null", "0"},
-            1, 12
-        ));
+        private void handle(String line) {
+            int space = line.indexOf(' ');
+            String command = space < 0 ? line : line.substring(0, space);
+            String argument = space < 0 ? "" : line.substring(space + 1);
+            switch (command) {
+                case "START":
+                    start(argument.isEmpty() ? "player" : argument);
+                    break;
+                case "ANSWER":
+                    answer(argument);
+                    break;
+                case "QUIT":
+                    close();
+                    break;
+                default:
+                    send("ERR unknown command");
+            }
+        }
         
-        questions.add(new Question(
-            "Which collection does not allow duplicates?",
-            new String[]{"ArrayList", "LinkedList", "HashSet", "HashMap"},
-            2, 15
-        ));
+        private void start(String playerName) {
+            if (session != null) {
+                session.finish();
+            }
+            session = quizManager.newSession(playerName, (s, index) -> post(() -> timedOut(s, index)));
+            advance();
+        }
         
-        questions.add(new Question(
-            "What is the parent class of all classes in Java?",
-            new String[]{"System", "Object", "Class", "Main"},
-            1, 12
-        ));
+        private void answer(String argument) {
+            String[] parts = argument.split(" ");
+            if (session == null || parts.length != 2) {
+                send("ERR expected ANSWER <index> <option> during a quiz");
+                return;
+            }
+            int index;
+            int option;
+            try {
+                index = Integer.parseInt(parts[0]);
+                option = Integer.parseInt(parts[1]);
+            } catch (NumberFormatException e) {
+                send("ERR bad number");
+                return;
+            }
+            // A stale index means the question already timed out and the client has not seen the push yet.
+            int points = index == session.getCurrentIndex() ? session.submit(option) : 0;
+            send("R " + points + " " + session.getScore());
+            if (points != 0) {
+                advance();
+            }
+        }
         
-        questions.add(new Question(
-            "Which operator is used to compare two values?",
-            new String[]{"=", "==", "equals", "compare"},
-            1, 10
-        ));
+        private void timedOut(QuizSession timedOut, int index) {
+            if (timedOut != session || !key.isValid() || index != session.getCurrentIndex()) return;
+            send("T " + index + " " + session.getScore());
+            advance();
+            flushQuietly();
+        }
         
-        questions.add(new Question(
-            "What does JVM stand for?",
-            new String[]{"Java Virtual Machine", "Java Visual Method", "Java Variable Memory", "Java Version Manager"},
-            0, 15
-        ));
+        private void advance() {
+            if (session.next()) {
+                Question q = session.getCurrentQuestion();
+                StringBuilder line = new StringBuilder("Q ").append(session.getCurrentIndex())
+                    .append(' ').append(q.getTimeLimit()).append(' ').append(clean(q.getQuestion()));
+                for (String option : q.getOptions()) {
+                    line.append('\t').append(clean(option));
+                }
+                send(line.toString());
+                return;
+            }
+            session.finish();
+            QuizScore score = session.toQuizScore(System.currentTimeMillis());
+            quizManager.saveScore(score);
+            send("END " + score.getScore() + " " + session.getCorrectAnswers() + " " + session.getWrongAnswers()
+                + " " + quizManager.getRank(score.getScore()));
+            session = null;
+        }
         
-        questions.add(new Question(
-            "Which loop is guaranteed to execute at least once?",
-            new String[]{"for", "while", "do-while", "foreach"},
-            2, 12
-        ));
+        private String clean(String text) {
+            return text.replace('\t', ' ').replace('\n', ' ');
+        }
         
-        questions.add(new Question(
-            "What is the output of 5 / 2 in Java?",
-            new String[]{"2.5", "2", "3", "2.0"},
-            1, 15
-        ));
+        private void send(String line) {
+            out.add(ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8)));
+        }
         
-        questions.add(new Question(
-            "Which access modifier is most restrictive?",
-            new String[]{"public", "protected", "private", "default"},
-            2, 12
-        ));
+        void flush() throws IOException {
+            while (!out.isEmpty()) {
+                ByteBuffer buffer = out.peek();
+                channel.write(buffer);
+                if (buffer.hasRemaining()) break;
+                out.poll();
+            }
+            if (key.isValid()) {
+                key.interestOps(out.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+        
+        private void flushQuietly() {
+            try {
+                flush();
+            } catch (IOException e) {
+                close();
+            }
+        }
+        
+        void close() {
+            if (session != null) {
+                session.finish();
+                session = null;
+            }
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Already closed by the peer.
+            }
+        }
     }
     
-    public List<Question> getShuffledQuestions() {
-        List<Question> shuffled = new ArrayList<>(questions);
-        Collections.shuffle(shuffled);
-        return shuffled;
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7777;
+        QuizServer server = new QuizServer(new QuizManager(), port);
+        server.start();
+        System.out.println("Quiz server listening on 127.0.0.1:" + server.getPort());
     }
+}
+
+// Simulates concurrent players against a QuizServer and reports sustained answers per second and
+// answer-to-verdict latency. Usage: QuizLoadTest [players] [seconds] [port]; without a port an
+// in-process server is started on an ephemeral port.
+class QuizLoadTest {
     
-    public void saveScore(QuizScore score) {
-        leaderboard.add(score);
-        Collections.sort(leaderboard, (s1, s2) -> Integer.compare(s2.getScore(), s1.getScore()));
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(SCORES_FILE))) {
-            oos.writeObject(leaderboard);
-        } catch (IOException e) {
-            System.err.println("Error saving scores: " + e.getMessage());
+    private static long[] play(int port, int player, long endNanos) throws IOException {
+        long[] latencies = new long[1024];
+        int count = 0;
+        Random random = new Random(player);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            out.write("START load-" + player + "\n");
+            out.flush();
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("END")) {
+                    if (System.nanoTime() >= endNanos) break;
+                    out.write("START load-" + player + "\n");
+                    out.flush();
+                } else if (line.startsWith("Q ")) {
+                    String index = line.substring(2, line.indexOf(' ', 2));
+                    long sent = System.nanoTime();
+                    out.write("ANSWER " + index + " " + random.nextInt(4) + "\n");
+                    out.flush();
+                    String verdict = in.readLine();
+                    if (verdict == null) break;
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = System.nanoTime() - sent;
+                } else if (line.startsWith("ERR")) {
+                    throw new IOException(line);
+                }
+            }
+            out.write("QUIT\n");
+            out.flush();
         }
+        return Arrays.copyOf(latencies, count);
     }
     
-    @SuppressWarnings("unchecked")
-    private void loadScores() {
-        File file = new File(SCORES_FILE);
-        if (file.exists()) {
-            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(SCORES_FILE))) {
-                leaderboard = (ArrayList<QuizScore>) ois.readObject();
-                if (leaderboard == null) leaderboard = new ArrayList<>();
-            } catch (IOException | ClassNotFoundException e) {
-                System.err.println("Error loading scores: " + e.getMessage());
-            }
+    public static void main(String[] args) throws Exception {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        QuizServer embedded = null;
+        int port;
+        if (args.length > 2) {
+            port = Integer.parseInt(args[2]);
+        } else {
+            embedded = new QuizServer(new QuizManager(), 0);
+            embedded.start();
+            port = embedded.getPort();
+        }
+        long start = System.nanoTime();
+        long endNanos = start + TimeUnit.SECONDS.toNanos(seconds);
+        List<CompletableFuture<long[]>> results = new ArrayList<>();
+        for (int i = 0; i < players; i++) {
+            int player = i;
+            CompletableFuture<long[]> result = new CompletableFuture<>();
+            Thread thread = new Thread(() -> {
+                try {
+                    result.complete(play(port, player, endNanos));
+                } catch (IOException e) {
+                    result.completeExceptionally(e);
+                }
+            }, "quiz-load-" + i);
+            thread.start();
+            results.add(result);
+        }
+        long[] all = new long[0];
+        for (CompletableFuture<long[]> result : results) {
+            long[] latencies = result.get();
+            int offset = all.length;
+            all = Arrays.copyOf(all, offset + latencies.length);
+            System.arraycopy(latencies, 0, all, offset, latencies.length);
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        Arrays.sort(all);
+        System.out.printf("Players: %d, answers: %d in %.1fs%n", players, all.length, elapsed);
+        System.out.printf("Throughput: %.0f answers/sec%n", all.length / elapsed);
+        if (all.length > 0) {
+            System.out.printf("Latency p50: %.3fms  p99: %.3fms  max: %.3fms%n",
+                              percentile(all, 0.50) / 1e6, percentile(all, 0.99) / 1e6, all[all.length - 1] / 1e6);
+        }
+        if (embedded != null) {
+            embedded.close();
         }
     }
     
-    public List<QuizScore> getLeaderboard() {
-        return leaderboard;
+    private static long percentile(long[] sorted, double p) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)];
     }
 }
 
@@ -166,31 +2576,24 @@ class QuizPanel extends JPanel {
     private JRadioButton[] optionButtons;
     private JButton submitButton;
     private JButton nextButton;
-    private javax.swing.Timer timer;
-    private int timeRemaining;
-    private int currentQuestionIndex;
-    private int score;
-    private int correctAnswers;
-    private int wrongAnswers;
-    private List<Question> questions;
+    private final Runnable clockListener = () -> SwingUtilities.invokeLater(this::updateTimerLabel);
+    private QuizSession session;
     private QuizManager quizManager;
     private String playerName;
     
     public QuizPanel(QuizManager quizManager, String playerName) {
         this.quizManager = quizManager;
         this.playerName = playerName;
-        this.questions = quizManager.getShuffledQuestions();
-        this.currentQuestionIndex = 0;
-        this.score = 0;
-        this.correctAnswers = 0;
-        this.wrongAnswers = 0;
+        this.session = quizManager.newSession(playerName, (s, index) ->
+            SwingUtilities.invokeLater(() -> handleTimeout(index)));
         
         setLayout(new BorderLayout(10, 10));
         setBackground(new Color(240, 248, 255));
         setBorder(new EmptyBorder(20, 20, 20, 20));
         
         initializeComponents();
-        loadQuestion();
+        QuizSession.DEADLINES.addClockListener(clockListener);
+        nextQuestion();
     }
     
     private void initializeComponents() {
@@ -220,7 +2623,7 @@ class QuizPanel extends JPanel {
         infoPanel.add(scoreLabel);
         topPanel.add(infoPanel, BorderLayout.NORTH);
         
-        JLabel titleLabel = new JLabel("Question " + (currentQuestionIndex + 1) + " of " + questions.size(), JLabel.CENTER);
+        JLabel titleLabel = new JLabel("Question 1 of " + session.getQuestionCount(), JLabel.CENTER);
         titleLabel.setFont(new Font("Arial", Font.BOLD, 18));
         titleLabel.setBorder(new EmptyBorder(15, 0, 10, 0));
         topPanel.add(titleLabel, BorderLayout.SOUTH);
@@ -283,12 +2686,7 @@ class QuizPanel extends JPanel {
     }
     
     private void loadQuestion() {
-        if (currentQuestionIndex >= questions.size()) {
-            finishQuiz();
-            return;
-        }
-        
-        Question q = questions.get(currentQuestionIndex);
+        Question q = session.getCurrentQuestion();
         questionLabel.setText("<html><body style='width: 100%; padding: 10px;'>" + q.getQuestion() + "</body></html>");
         
         String[] options = q.getOptions();
@@ -301,41 +2699,30 @@ class QuizPanel extends JPanel {
         optionsGroup.clearSelection();
         submitButton.setVisible(true);
         nextButton.setVisible(false);
-        
-        timeRemaining = q.getTimeLimit();
-        startTimer();
+        updateTimerLabel();
     }
     
-    private void startTimer() {
-        if (timer != null) timer.stop();
-        
-        timer = new javax.swing.Timer(1000, new ActionListener() {
-            public void actionPerformed(ActionEvent e) {
-                timeRemaining--;
-                timerLabel.setText(String.format("Time: %02d:%02d", timeRemaining / 60, timeRemaining % 60));
-                
-                if (timeRemaining <= 5) {
-                    timerLabel.setForeground(Color.RED);
-                }
-                
-                if (timeRemaining <= 0) {
-                    timer.stop();
-                    JOptionPane.showMessageDialog(QuizPanel.this, 
-                        "Time's up! Moving to next question.", 
-                        "Timeout", JOptionPane.WARNING_MESSAGE);
-                    wrongAnswers++;
-                    score -= 1;
-                    updateScore();
-                    nextQuestion();
-                }
-            }
-        });
-        timer.start();
+    private void updateTimerLabel() {
+        int timeRemaining = session.getTimeRemaining();
+        timerLabel.setText(String.format("Time: %02d:%02d", timeRemaining / 60, timeRemaining % 60));
+        if (timeRemaining <= 5 && !session.isAnswered()) {
+            timerLabel.setForeground(Color.RED);
+        }
+    }
+    
+    private void handleTimeout(int questionIndex) {
+        if (questionIndex != session.getCurrentIndex()) {
+            return;
+        }
+        updateTimerLabel();
+        JOptionPane.showMessageDialog(QuizPanel.this, 
+            "Time's up! Moving to next question.", 
+            "Timeout", JOptionPane.WARNING_MESSAGE);
+        updateScore();
+        nextQuestion();
     }
     
     private void submitAnswer() {
-        timer.stop();
-        
         int selectedOption = -1;
         for (int i = 0; i < 4; i++) {
             if (optionButtons[i].isSelected()) {
@@ -348,28 +2735,27 @@ class QuizPanel extends JPanel {
             JOptionPane.showMessageDialog(this, 
                 "Please select an answer!", 
                 "No Selection", JOptionPane.WARNING_MESSAGE);
-            timer.start();
             return;
         }
         
-        Question q = questions.get(currentQuestionIndex);
+        Question q = session.getCurrentQuestion();
+        int points = session.submit(selectedOption);
+        if (points == 0) {
+            return;
+        }
         
         for (int i = 0; i < 4; i++) {
             optionButtons[i].setEnabled(false);
         }
         
-        if (selectedOption == q.getCorrectAnswer()) {
+        if (points > 0) {
             optionButtons[selectedOption].setBackground(new Color(144, 238, 144));
-            score += 4;
-            correctAnswers++;
             JOptionPane.showMessageDialog(this, 
                 "Correct! +4 points", 
                 "Correct Answer", JOptionPane.INFORMATION_MESSAGE);
         } else {
             optionButtons[selectedOption].setBackground(new Color(255, 182, 193));
             optionButtons[q.getCorrectAnswer()].setBackground(new Color(144, 238, 144));
-            score -= 1;
-            wrongAnswers++;
             JOptionPane.showMessageDialog(this, 
                 "Wrong! -1 point\nCorrect answer: " + q.getOptions()[q.getCorrectAnswer()], 
                 "Wrong Answer", JOptionPane.ERROR_MESSAGE);
@@ -381,22 +2767,30 @@ class QuizPanel extends JPanel {
     }
     
     private void nextQuestion() {
-        currentQuestionIndex++;
-        loadQuestion();
+        if (session.next()) {
+            loadQuestion();
+        } else {
+            finishQuiz();
+        }
     }
     
     private void updateScore() {
-        scoreLabel.setText("Score: " + score);
+        scoreLabel.setText("Score: " + session.getScore());
     }
     
     private void finishQuiz() {
-        timer.stop();
-        
-        double accuracy = (correctAnswers * 100.0) / questions.size();
-        String date = new java.text.SimpleDateFormat("dd-MM-yyyy HH:mm").format(new Date());
-        
-        QuizScore quizScore = new QuizScore(playerName, score, questions.size(), date, accuracy);
-        quizManager.saveScore(quizScore);
+        QuizSession.DEADLINES.removeClockListener(clockListener);
+        session.finish();
+        
+        QuizScore quizScore = session.toQuizScore(System.currentTimeMillis());
+        quizManager.saveScore(quizScore).whenComplete((saved, error) -> {
+            if (error != null) {
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null,
+                    "Your score could not be saved: " + error.getMessage(), "Save Failed", JOptionPane.ERROR_MESSAGE));
+            }
+        });
+        int score = quizScore.getScore();
+        double accuracy = quizScore.getAccuracy();
         
         String message = String.format(
             "Quiz Completed!\n\n" +
@@ -404,8 +2798,12 @@ class QuizPanel extends JPanel {
             "Total Score: %d\n" +
             "Correct Answers: %d\n" +
             "Wrong Answers: %d\n" +
-            "Accuracy: %.1f%%",
-            playerName, score, correctAnswers, wrongAnswers, accuracy
+            "Accuracy: %.1f%%\n" +
+            "Rank: #%d of %d\n" +
+            "Today: #%d of %d",
+            playerName, score, session.getCorrectAnswers(), session.getWrongAnswers(), accuracy,
+            quizManager.getRank(score), quizManager.getScoreCount(LeaderboardPeriod.ALL_TIME),
+            quizManager.getRank(LeaderboardPeriod.TODAY, score), quizManager.getScoreCount(LeaderboardPeriod.TODAY)
         );
         
         JOptionPane.showMessageDialog(this, message, "Quiz Results", JOptionPane.INFORMATION_MESSAGE);
@@ -415,7 +2813,79 @@ class QuizPanel extends JPanel {
     }
 }
 
+class LeaderboardTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    private static final String[] COLUMN_NAMES = {"Rank", "Player Name", "Score", "Questions", "Accuracy %", "Date"};
+    private final Leaderboard leaderboard;
+    private final LeaderboardListener listener = new LeaderboardListener() {
+        public void scoreInserted(int index) {
+            SwingUtilities.invokeLater(() -> rowInserted(index));
+        }
+        
+        public void scoresAdded(int count) {
+            SwingUtilities.invokeLater(() -> rowsAdded(count));
+        }
+    };
+    private int rowCount;
+    
+    public LeaderboardTableModel(Leaderboard leaderboard) {
+        this.leaderboard = leaderboard;
+        // Listeners run under the leaderboard's lock, so no insert can fall between the count and the listener.
+        synchronized (leaderboard) {
+            leaderboard.addListener(listener);
+            rowCount = leaderboard.size();
+        }
+    }
+    
+    // Row counts only move on the EDT so JTable never sees more rows than it has been told about.
+    private void rowInserted(int index) {
+        rowCount++;
+        fireTableRowsInserted(index, index);
+    }
+    
+    // A loaded history segment lands all over the ranking, so the table is refreshed once per segment.
+    private void rowsAdded(int count) {
+        rowCount += count;
+        fireTableDataChanged();
+    }
+    
+    public void dispose() {
+        leaderboard.removeListener(listener);
+    }
+    
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+    
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+    
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+    
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (column == 0) {
+            return row + 1;
+        }
+        QuizScore s = leaderboard.get(row);
+        switch (column) {
+            case 1: return s.getPlayerName();
+            case 2: return s.getScore();
+            case 3: return s.getTotalQuestions();
+            case 4: return String.format("%.1f%%", s.getAccuracy());
+            default: return s.getDate();
+        }
+    }
+}
+
 class LeaderboardFrame extends JFrame {
+    private final LeaderboardTableModel model;
     
     public LeaderboardFrame(QuizManager quizManager) {
         
@@ -434,26 +2904,8 @@ class LeaderboardFrame extends JFrame {
         titleLabel.setBorder(new EmptyBorder(10, 0, 20, 0));
         mainPanel.add(titleLabel, BorderLayout.NORTH);
         
-        String[] columnNames = {"Rank", "Player Name", "Score", "Questions", "Accuracy %", "Date"};
-        DefaultTableModel model = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
-        
-        List<QuizScore> scores = quizManager.getLeaderboard();
-        for (int i = 0; i < scores.size(); i++) {
-            QuizScore s = scores.get(i);
-            model.addRow(new Object[]{
-                i + 1,
-                s.getPlayerName(),
-                s.getScore(),
-                s.getTotalQuestions(),
-                String.format("%.1f%%", s.getAccuracy()),
-                s.getDate()
-            });
-        }
+        model = new LeaderboardTableModel(quizManager.getLeaderboard());
+        quizManager.loadHistoryInBackground();
         
         JTable table = new JTable(model);
         table.setFont(new Font("Arial", Font.PLAIN, 14));
@@ -476,7 +2928,7 @@ class LeaderboardFrame extends JFrame {
         playAgainButton.setBorder(new EmptyBorder(10, 30, 10, 30));
         playAgainButton.addActionListener(e -> {
             dispose();
-            new QuizApp().setVisible(true);
+            new QuizApp(quizManager).setVisible(true);
         });
         
         JButton exitButton = new JButton("Exit");
@@ -493,13 +2945,19 @@ class LeaderboardFrame extends JFrame {
         
         add(mainPanel);
     }
+    
+    @Override
+    public void dispose() {
+        model.dispose();
+        super.dispose();
+    }
 }
 
 public class QuizApp extends JFrame {
     private QuizManager quizManager;
     
-    public QuizApp() {
-        quizManager = new QuizManager();
+    public QuizApp(QuizManager quizManager) {
+        this.quizManager = quizManager;
         
         setTitle("Online Quiz System");
         setSize(900, 700);
@@ -530,7 +2988,7 @@ public class QuizApp extends JFrame {
             "⏰ Each question has a time limit<br>" +
             "✅ Correct answer: +4 points<br>" +
             "❌ Wrong answer: -1 point<br>" +
-            "🎯 Questions are randomized<br><br>" +
+            "🎯 Questions adapt to your level<br><br>" +
             "Good Luck!</body></html>", JLabel.CENTER);
         infoLabel.setFont(new Font("Arial", Font.PLAIN, 18));
         centerPanel.add(infoLabel, gbc);
@@ -586,8 +3044,10 @@ public class QuizApp extends JFrame {
             e.printStackTrace();
         }
         
+        // Scores are loaded here rather than on the EDT, and every later window shares this manager.
+        QuizManager quizManager = new QuizManager();
         SwingUtilities.invokeLater(() -> {
-            new QuizApp().setVisible(true);
+            new QuizApp(quizManager).setVisible(true);
         });
     }
 }
@@ -1,12 +1,30 @@
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
+// Immutable: the same instance is shared by the versioned store and every index, so updates replace it.
 class Student implements Serializable {
-    private int id;
-    private String name;
-    private int age;
-    private String course;
-    private double gpa;
+    // Pinned to the value computed for the original mutable class so existing students.dat files still load.
+    private static final long serialVersionUID = 2050088743559513594L;
+    private final int id;
+    private final String name;
+    private final int age;
+    private final String course;
+    private final double gpa;
     
     public Student(int id, String name, int age, String course, double gpa) {
         this.id = id;
@@ -22,122 +40,1918 @@ class Student implements Serializable {
     public String getCourse() { return course; }
     public double getGpa() { return gpa; }
     
-    public void setName(String name) { this.name = name; }
-    public void setAge(int age) { this.age = age; }
-    public void setCourse(String course) { this.course = course; }
-    public void setGpa(double gpa) { this.gpa = gpa; }
+    // The rules every import path applies before a row is accepted.
+    public boolean isValid() {
+        return name != null && !name.isEmpty() && course != null && !course.isEmpty()
+            && age >= 0 && gpa >= 0 && !Double.isInfinite(gpa);
+    }
+    
+    @Override
+    public String toString() {
+        return StudentFormatter.appendTo(new StringBuilder(96), this).toString();
+    }
+}
+
+class StudentFormatter {
+    static StringBuilder appendTo(StringBuilder sb, Student s) {
+        sb.append("ID: ").append(s.getId())
+          .append(" | Name: ").append(s.getName())
+          .append(" | Age: ").append(s.getAge())
+          .append(" | Course: ").append(s.getCourse())
+          .append(" | GPA: ");
+        return appendTwoDecimals(sb, s.getGpa());
+    }
+    
+    // Matches %.2f; values that sit on a rounding tie (or are out of range) go through String.format.
+    static StringBuilder appendTwoDecimals(StringBuilder sb, double value) {
+        double scaled = value * 100;
+        if (!(value >= 0) || scaled >= Long.MAX_VALUE || Math.abs(scaled - Math.floor(scaled) - 0.5) < 1e-6) {
+            return sb.append(String.format("%.2f", value));
+        }
+        long cents = Math.round(scaled);
+        long fraction = cents % 100;
+        sb.append(cents / 100).append('.');
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        return sb.append(fraction);
+    }
+}
+
+class StudentNotFoundException extends Exception {
+    public StudentNotFoundException(String message) {
+        super(message);
+    }
+}
+
+class DuplicateStudentException extends Exception {
+    private static final long serialVersionUID = 1L;
+    
+    public DuplicateStudentException(String message) {
+        super(message);
+    }
+}
+
+class StudentCodec {
+    static final int MAGIC = 0x53545544;
+    static final int VERSION = 1;
+    private static final short SERIALIZATION_MAGIC = (short) 0xACED;
+    private static final int MAX_STRING_BYTES = 1 << 16;
+    
+    static void writeHeader(DataOutputStream out, int count) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(count);
+    }
+    
+    static int readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a student data file");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported student data version " + version);
+        }
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Corrupt student count " + count);
+        }
+        return count;
+    }
+    
+    static boolean isLegacyFormat(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readShort() == SERIALIZATION_MAGIC;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+    
+    static void write(DataOutputStream out, Student s) throws IOException {
+        out.writeInt(s.getId());
+        out.writeInt(s.getAge());
+        out.writeDouble(s.getGpa());
+        writeString(out, s.getName());
+        writeString(out, s.getCourse());
+    }
+    
+    static Student read(DataInputStream in) throws IOException {
+        int id = in.readInt();
+        int age = in.readInt();
+        double gpa = in.readDouble();
+        String name = readString(in);
+        String course = readString(in);
+        return new Student(id, name, age, course, gpa);
+    }
+    
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    // Lengths come from the file, so a corrupt one must fail as an IOException rather than a huge or negative allocation.
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new IOException("Corrupt string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
+
+// Rows are sorted by ID, with id, age and gpa in primitive columns and names and courses dictionary-encoded,
+// so lookups and GPA aggregates read the mapped file directly and never build the whole roster.
+class MappedStudentStore {
+    static final int MAGIC = 0x53434F4C;
+    static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private final MappedByteBuffer buffer;
+    private final int rows;
+    private final int agePos;
+    private final int gpaPos;
+    private final int namePos;
+    private final int coursePos;
+    private final int dictPos;
+    private final int dictDataPos;
+    
+    private MappedStudentStore(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a columnar student file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported columnar version " + buffer.getInt(4));
+        }
+        rows = buffer.getInt(8);
+        int dictCount = buffer.getInt(12);
+        long dictEnd = HEADER_SIZE + 24L * rows + 4L * ((long) dictCount + 1);
+        if (rows < 0 || dictCount < 0 || dictEnd > buffer.capacity()
+                || dictEnd + buffer.getInt((int) dictEnd - 4) != buffer.capacity()) {
+            throw new IOException("Corrupt columnar file");
+        }
+        agePos = HEADER_SIZE + 4 * rows;
+        gpaPos = HEADER_SIZE + 8 * rows;
+        namePos = HEADER_SIZE + 16 * rows;
+        coursePos = HEADER_SIZE + 20 * rows;
+        dictPos = HEADER_SIZE + 24 * rows;
+        dictDataPos = (int) dictEnd;
+    }
+    
+    public static MappedStudentStore open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Columnar file too large to map: " + channel.size());
+            }
+            return new MappedStudentStore(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+    
+    public static void write(File file, Collection<Student> students) throws IOException {
+        Student[] sorted = students.toArray(new Student[0]);
+        Arrays.sort(sorted, (s1, s2) -> Integer.compare(s1.getId(), s2.getId()));
+        
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<byte[]> entries = new ArrayList<>();
+        int[] nameRefs = new int[sorted.length];
+        int[] courseRefs = new int[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            nameRefs[i] = intern(dictionary, entries, sorted[i].getName());
+            courseRefs[i] = intern(dictionary, entries, sorted[i].getCourse());
+        }
+        
+        AtomicFileStore.replace(file, out -> {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(sorted.length);
+            out.writeInt(entries.size());
+            for (Student s : sorted) out.writeInt(s.getId());
+            for (Student s : sorted) out.writeInt(s.getAge());
+            for (Student s : sorted) out.writeDouble(s.getGpa());
+            for (int ref : nameRefs) out.writeInt(ref);
+            for (int ref : courseRefs) out.writeInt(ref);
+            int offset = 0;
+            out.writeInt(offset);
+            for (byte[] entry : entries) {
+                offset += entry.length;
+                out.writeInt(offset);
+            }
+            for (byte[] entry : entries) out.write(entry);
+        });
+    }
+    
+    private static int intern(Map<String, Integer> dictionary, List<byte[]> entries, String value) {
+        Integer ref = dictionary.get(value);
+        if (ref == null) {
+            ref = entries.size();
+            dictionary.put(value, ref);
+            entries.add(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return ref;
+    }
+    
+    public int size() { return rows; }
+    public int getId(int row) { return buffer.getInt(HEADER_SIZE + 4 * row); }
+    public int getAge(int row) { return buffer.getInt(agePos + 4 * row); }
+    public double getGpa(int row) { return buffer.getDouble(gpaPos + 8 * row); }
+    public String getName(int row) { return lookup(buffer.getInt(namePos + 4 * row)); }
+    public String getCourse(int row) { return lookup(buffer.getInt(coursePos + 4 * row)); }
+    
+    private String lookup(int ref) {
+        int start = buffer.getInt(dictPos + 4 * ref);
+        int end = buffer.getInt(dictPos + 4 * (ref + 1));
+        byte[] bytes = new byte[end - start];
+        buffer.get(dictDataPos + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    public Student get(int row) {
+        return new Student(getId(row), getName(row), getAge(row), getCourse(row), getGpa(row));
+    }
+    
+    // First row whose ID is greater than afterId, or size() if there is none.
+    public int rowAfter(int afterId) {
+        int lo = 0;
+        int hi = rows;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (getId(mid) <= afterId) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+    
+    public Student findById(int id) {
+        int lo = 0;
+        int hi = rows - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int midId = getId(mid);
+            if (midId < id) {
+                lo = mid + 1;
+            } else if (midId > id) {
+                hi = mid - 1;
+            } else {
+                return get(mid);
+            }
+        }
+        return null;
+    }
+    
+    // Scans only the gpa column, plus the id column when some rows are shadowed by later changes.
+    public GpaSummary summarizeGpa(Set<Integer> excludedIds) {
+        int count = 0;
+        double sum = 0;
+        double mean = 0;
+        double m2 = 0;
+        double min = Double.NaN;
+        double max = Double.NaN;
+        for (int i = 0; i < rows; i++) {
+            if (!excludedIds.isEmpty() && excludedIds.contains(getId(i))) {
+                continue;
+            }
+            double gpa = buffer.getDouble(gpaPos + 8 * i);
+            count++;
+            sum += gpa;
+            double delta = gpa - mean;
+            mean += delta / count;
+            m2 += delta * (gpa - mean);
+            min = count == 1 ? gpa : Math.min(min, gpa);
+            max = count == 1 ? gpa : Math.max(max, gpa);
+        }
+        return new GpaSummary(count, sum, mean, m2, min, max);
+    }
+}
+
+class GpaSummary {
+    final int count;
+    final double sum;
+    final double mean;
+    final double m2;
+    final double min;
+    final double max;
+    
+    GpaSummary(int count, double sum, double mean, double m2, double min, double max) {
+        this.count = count;
+        this.sum = sum;
+        this.mean = mean;
+        this.m2 = m2;
+        this.min = min;
+        this.max = max;
+    }
+    
+    static GpaSummary of(Student[] students, int from, int to) {
+        int count = 0;
+        double sum = 0;
+        double mean = 0;
+        double m2 = 0;
+        double min = Double.NaN;
+        double max = Double.NaN;
+        for (int i = from; i < to; i++) {
+            double gpa = students[i].getGpa();
+            count++;
+            sum += gpa;
+            double delta = gpa - mean;
+            mean += delta / count;
+            m2 += delta * (gpa - mean);
+            min = count == 1 ? gpa : Math.min(min, gpa);
+            max = count == 1 ? gpa : Math.max(max, gpa);
+        }
+        return new GpaSummary(count, sum, mean, m2, min, max);
+    }
+    
+    GpaSummary combine(GpaSummary other) {
+        if (count == 0) return other;
+        if (other.count == 0) return this;
+        int n = count + other.count;
+        double delta = other.mean - mean;
+        return new GpaSummary(n, sum + other.sum,
+                              mean + delta * other.count / n,
+                              m2 + other.m2 + delta * delta * count / n * other.count,
+                              Math.min(min, other.min), Math.max(max, other.max));
+    }
+}
+
+class GpaSummaryTask extends RecursiveTask<GpaSummary> {
+    private static final long serialVersionUID = 1L;
+    private static final int LEAF_SIZE = 4096;
+    private final Student[] students;
+    private final int from;
+    private final int to;
+    private final boolean parallel;
+    
+    GpaSummaryTask(Student[] students, int from, int to, boolean parallel) {
+        this.students = students;
+        this.from = from;
+        this.to = to;
+        this.parallel = parallel;
+    }
+    
+    // Both paths split the range identically, so the floating-point results match exactly.
+    static GpaSummary summarize(Student[] students, boolean parallel) {
+        GpaSummaryTask task = new GpaSummaryTask(students, 0, students.length, parallel);
+        return parallel ? ForkJoinPool.commonPool().invoke(task) : task.compute();
+    }
+    
+    @Override
+    protected GpaSummary compute() {
+        if (to - from <= LEAF_SIZE) {
+            return GpaSummary.of(students, from, to);
+        }
+        int mid = (from + to) >>> 1;
+        GpaSummaryTask left = new GpaSummaryTask(students, from, mid, parallel);
+        GpaSummaryTask right = new GpaSummaryTask(students, mid, to, parallel);
+        if (parallel) {
+            left.fork();
+            GpaSummary rightResult = right.compute();
+            return left.join().combine(rightResult);
+        }
+        return left.compute().combine(right.compute());
+    }
+}
+
+class GpaStats {
+    private final TreeMap<Double, Integer> values = new TreeMap<>();
+    private int count;
+    private double sum;
+    private double mean;
+    private double m2;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    
+    synchronized void add(double gpa) {
+        count++;
+        sum += gpa;
+        double delta = gpa - mean;
+        mean += delta / count;
+        m2 += delta * (gpa - mean);
+        values.merge(gpa, 1, Integer::sum);
+        min = values.firstKey();
+        max = values.lastKey();
+    }
+    
+    synchronized void remove(double gpa) {
+        Integer n = values.get(gpa);
+        if (n == null) {
+            return;
+        }
+        if (n == 1) {
+            values.remove(gpa);
+        } else {
+            values.put(gpa, n - 1);
+        }
+        count--;
+        sum -= gpa;
+        if (count == 0) {
+            mean = 0;
+            m2 = 0;
+            min = Double.NaN;
+            max = Double.NaN;
+            return;
+        }
+        double oldMean = mean;
+        mean = (oldMean * (count + 1) - gpa) / count;
+        m2 = Math.max(0, m2 - (gpa - oldMean) * (gpa - mean));
+        min = values.firstKey();
+        max = values.lastKey();
+    }
+    
+    // Expects students in GpaIndex order, so the multiset is updated from runs of equal GPAs in one linear pass.
+    synchronized void addAll(Student[] sorted, boolean parallel) {
+        GpaSummary summary = summary().combine(GpaSummaryTask.summarize(sorted, parallel));
+        for (int i = 0; i < sorted.length; ) {
+            double gpa = sorted[i].getGpa();
+            int end = i + 1;
+            while (end < sorted.length && Double.compare(sorted[end].getGpa(), gpa) == 0) {
+                end++;
+            }
+            values.merge(gpa, end - i, Integer::sum);
+            i = end;
+        }
+        count = summary.count;
+        sum = summary.sum;
+        mean = summary.mean;
+        m2 = summary.m2;
+        min = summary.min;
+        max = summary.max;
+    }
+    
+    synchronized GpaSummary summary() {
+        return new GpaSummary(count, sum, mean, m2, min, max);
+    }
+    
+    public synchronized int getCount() { return count; }
+    public synchronized double getSum() { return sum; }
+    public synchronized double getMean() { return mean; }
+    public synchronized double getVariance() { return count == 0 ? 0 : m2 / count; }
+    public synchronized double getMin() { return min; }
+    public synchronized double getMax() { return max; }
+}
+
+class GpaIndex {
+    private static class Node {
+        final Student student;
+        final int priority;
+        int size = 1;
+        Node left;
+        Node right;
+        
+        Node(Student student, int priority) {
+            this.student = student;
+            this.priority = priority;
+        }
+    }
+    
+    private final Random random = new Random();
+    private Node root;
+    
+    private static int compare(Student a, Student b) {
+        int c = Double.compare(b.getGpa(), a.getGpa());
+        return c != 0 ? c : Integer.compare(a.getId(), b.getId());
+    }
+    
+    private static int size(Node n) {
+        return n == null ? 0 : n.size;
+    }
+    
+    private static Node update(Node n) {
+        n.size = 1 + size(n.left) + size(n.right);
+        return n;
+    }
+    
+    private static Node merge(Node a, Node b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            return update(a);
+        }
+        b.left = merge(a, b.left);
+        return update(b);
+    }
+    
+    // Splits n into nodes ordered before key and the rest; with inclusive set, key itself goes left.
+    private static Node[] split(Node n, Student key, boolean inclusive) {
+        if (n == null) return new Node[2];
+        int c = compare(n.student, key);
+        if (c < 0 || (inclusive && c == 0)) {
+            Node[] parts = split(n.right, key, inclusive);
+            n.right = parts[0];
+            parts[0] = update(n);
+            return parts;
+        }
+        Node[] parts = split(n.left, key, inclusive);
+        n.left = parts[1];
+        parts[1] = update(n);
+        return parts;
+    }
+    
+    synchronized void insert(Student s) {
+        Node[] parts = split(root, s, false);
+        root = merge(merge(parts[0], new Node(s, random.nextInt())), parts[1]);
+    }
+    
+    synchronized void remove(Student s) {
+        Node[] parts = split(root, s, false);
+        Node[] rest = split(parts[1], s, true);
+        root = merge(parts[0], rest[1]);
+    }
+    
+    private static Student[] sort(Student[] students, boolean parallel) {
+        Student[] sorted = students.clone();
+        if (parallel) {
+            Arrays.parallelSort(sorted, GpaIndex::compare);
+        } else {
+            Arrays.sort(sorted, GpaIndex::compare);
+        }
+        return sorted;
+    }
+    
+    synchronized Student[] build(Student[] students, boolean parallel) {
+        Student[] sorted = sort(students, parallel);
+        root = buildTree(sorted);
+        return sorted;
+    }
+    
+    // Adds a batch and returns it in index order. Small batches are inserted one by one; large ones are merged
+    // with the current order and rebuilt in linear time, and readers keep using the old tree until the swap.
+    // Callers must keep other writers out for the duration.
+    Student[] insertAll(Student[] batch, boolean parallel) {
+        Student[] sorted = sort(batch, parallel);
+        List<Student> current;
+        synchronized (this) {
+            if ((long) sorted.length * 16 < size(root)) {
+                for (Student s : sorted) {
+                    insert(s);
+                }
+                return sorted;
+            }
+            current = new ArrayList<>(size(root));
+            collect(root, 0, size(root), current);
+        }
+        Student[] merged = new Student[current.size() + sorted.length];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < merged.length; k++) {
+            if (j == sorted.length || (i < current.size() && compare(current.get(i), sorted[j]) < 0)) {
+                merged[k] = current.get(i++);
+            } else {
+                merged[k] = sorted[j++];
+            }
+        }
+        Node tree = buildTree(merged);
+        synchronized (this) {
+            root = tree;
+        }
+        return sorted;
+    }
+    
+    private Node buildTree(Student[] sorted) {
+        Node[] stack = new Node[sorted.length];
+        int top = -1;
+        for (Student s : sorted) {
+            Node node = new Node(s, random.nextInt());
+            Node last = null;
+            while (top >= 0 && stack[top].priority < node.priority) {
+                last = stack[top--];
+            }
+            node.left = last;
+            if (top >= 0) {
+                stack[top].right = node;
+            }
+            stack[++top] = node;
+        }
+        Node tree = top >= 0 ? stack[0] : null;
+        fixSizes(tree);
+        return tree;
+    }
+    
+    private static int fixSizes(Node n) {
+        if (n == null) return 0;
+        n.size = 1 + fixSizes(n.left) + fixSizes(n.right);
+        return n.size;
+    }
+    
+    public synchronized int size() {
+        return size(root);
+    }
+    
+    // Number of students with a GPA strictly above the given value, i.e. the rank of the first one at or below it.
+    private int countAbove(double gpa) {
+        int count = 0;
+        Node n = root;
+        while (n != null) {
+            if (n.student.getGpa() > gpa) {
+                count += size(n.left) + 1;
+                n = n.right;
+            } else {
+                n = n.left;
+            }
+        }
+        return count;
+    }
+    
+    private static Student select(Node n, int rank) {
+        while (n != null) {
+            int leftSize = size(n.left);
+            if (rank < leftSize) {
+                n = n.left;
+            } else if (rank == leftSize) {
+                return n.student;
+            } else {
+                rank -= leftSize + 1;
+                n = n.right;
+            }
+        }
+        return null;
+    }
+    
+    private static void collect(Node n, int from, int to, List<Student> out) {
+        if (n == null || from >= to) return;
+        int leftSize = size(n.left);
+        if (from < leftSize) {
+            collect(n.left, from, Math.min(to, leftSize), out);
+        }
+        if (from <= leftSize && leftSize < to) {
+            out.add(n.student);
+        }
+        if (to > leftSize + 1) {
+            collect(n.right, Math.max(0, from - leftSize - 1), to - leftSize - 1, out);
+        }
+    }
+    
+    public synchronized List<Student> topK(int k) {
+        List<Student> out = new ArrayList<>();
+        collect(root, 0, Math.min(k, size(root)), out);
+        return out;
+    }
+    
+    public synchronized List<Student> bottomK(int k) {
+        int n = size(root);
+        List<Student> out = new ArrayList<>();
+        collect(root, Math.max(0, n - k), n, out);
+        Collections.reverse(out);
+        return out;
+    }
+    
+    public synchronized Student percentile(double p) {
+        int n = size(root);
+        if (n == 0) return null;
+        int ascending = (int) Math.ceil(p / 100.0 * n) - 1;
+        ascending = Math.max(0, Math.min(n - 1, ascending));
+        return select(root, n - 1 - ascending);
+    }
+    
+    public synchronized int count(double minGpa, double maxGpa) {
+        if (minGpa > maxGpa) return 0;
+        return countAbove(Math.nextDown(minGpa)) - countAbove(maxGpa);
+    }
+    
+    public synchronized List<Student> range(double minGpa, double maxGpa) {
+        List<Student> out = new ArrayList<>();
+        if (minGpa > maxGpa) return out;
+        collect(root, countAbove(maxGpa), countAbove(Math.nextDown(minGpa)), out);
+        return out;
+    }
+    
+    public synchronized List<Student> page(int offset, int limit) {
+        int n = size(root);
+        int from = Math.max(0, Math.min(offset, n));
+        List<Student> out = new ArrayList<>(Math.min(limit, n - from));
+        collect(root, from, (int) Math.min((long) from + limit, n), out);
+        return out;
+    }
+    
+    // The page that follows the given student in index order (or the first page for null), so a walk through
+    // the whole index stays in step even when students are added or removed between pages.
+    public synchronized List<Student> pageAfter(Student after, int limit) {
+        int from = 0;
+        Node n = after == null ? null : root;
+        while (n != null) {
+            if (compare(n.student, after) <= 0) {
+                from += size(n.left) + 1;
+                n = n.right;
+            } else {
+                n = n.left;
+            }
+        }
+        int to = (int) Math.min((long) from + limit, size(root));
+        List<Student> out = new ArrayList<>(Math.max(0, to - from));
+        collect(root, from, to, out);
+        return out;
+    }
+    
+    public synchronized List<Student> toList() {
+        List<Student> out = new ArrayList<>(size(root));
+        collect(root, 0, size(root), out);
+        return out;
+    }
+}
+
+class StudentCsv {
+    static final String HEADER = "id,name,age,course,gpa";
+    
+    static Student parse(String line) {
+        List<String> fields = split(line);
+        if (fields.size() != 5) return null;
+        try {
+            int id = Integer.parseInt(fields.get(0).trim());
+            String name = fields.get(1).trim();
+            int age = Integer.parseInt(fields.get(2).trim());
+            String course = fields.get(3).trim();
+            double gpa = Double.parseDouble(fields.get(4).trim());
+            Student s = new Student(id, name, age, course, gpa);
+            return s.isValid() ? s : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    private static List<String> split(String line) {
+        List<String> fields = new ArrayList<>(5);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+    
+    static void write(Writer out, Student s) throws IOException {
+        out.write(Integer.toString(s.getId()));
+        out.write(',');
+        writeField(out, s.getName());
+        out.write(',');
+        out.write(Integer.toString(s.getAge()));
+        out.write(',');
+        writeField(out, s.getCourse());
+        out.write(',');
+        out.write(Double.toString(s.getGpa()));
+        out.write('\n');
+    }
+    
+    private static void writeField(Writer out, String value) throws IOException {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            out.write(value);
+        } else {
+            out.write('"');
+            out.write(value.replace("\"", "\"\""));
+            out.write('"');
+        }
+    }
+}
+
+class VersionedStudentStore {
+    private static class Version {
+        final Student student;
+        final long version;
+        volatile Version previous;
+    
+        Version(Student student, long version, Version previous) {
+            this.student = student;
+            this.version = version;
+            this.previous = previous;
+        }
+    }
+    
+    // Writers must hold the owning system's lock for the ID. Snapshots take no locks: they read at the committed
+    // watermark, below which every version is already installed.
+    private final ConcurrentSkipListMap<Integer, Version> heads = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Long, Integer> readers = new ConcurrentSkipListMap<>();
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong committed = new AtomicLong();
+    private volatile boolean historyRetained;
+    
+    Student get(int id) {
+        Version head = heads.get(id);
+        return head == null ? null : head.student;
+    }
+    
+    Stream<Student> stream() {
+        return heads.values().stream().map(v -> v.student).filter(Objects::nonNull);
+    }
+    
+    Stream<Student> streamAfter(int afterId) {
+        return heads.tailMap(afterId, false).values().stream().map(v -> v.student).filter(Objects::nonNull);
+    }
+    
+    boolean isEmpty() {
+        return stream().findAny().isEmpty();
+    }
+    
+    Student putIfAbsent(Student student) {
+        Version head = heads.get(student.getId());
+        if (head != null && head.student != null) {
+            return head.student;
+        }
+        install(student.getId(), student, head);
+        return null;
+    }
+    
+    Student replace(int id, Student student) {
+        Version head = heads.get(id);
+        if (head == null || head.student == null) {
+            return null;
+        }
+        install(id, student, head);
+        return head.student;
+    }
+    
+    Student remove(int id) {
+        Version head = heads.get(id);
+        if (head == null || head.student == null) {
+            return null;
+        }
+        install(id, null, head);
+        return head.student;
+    }
+    
+    void put(Student student) {
+        install(student.getId(), student, heads.get(student.getId()));
+    }
+    
+    // The new version is published with its history linked and only pruned once committed, so a snapshot that
+    // registers while it is in flight either is seen by the pruning or reads at a watermark that includes it.
+    private void install(int id, Student student, Version head) {
+        long version = clock.incrementAndGet();
+        Version node = new Version(student, version, head);
+        heads.put(id, node);
+        while (committed.get() != version - 1) {
+            Thread.yield();
+        }
+        committed.set(version);
+        // Snapshots close without the stripe locks, so the horizon is read exactly once.
+        Map.Entry<Long, Integer> oldest = readers.firstEntry();
+        if (oldest == null) {
+            node.previous = null;
+            if (student == null) {
+                heads.remove(id, node);
+            }
+            return;
+        }
+        historyRetained = true;
+        prune(node, oldest.getKey());
+    }
+    
+    // Keeps the newest version at or below the horizon plus everything newer.
+    private static void prune(Version node, long horizon) {
+        while (node.version > horizon && node.previous != null) {
+            node = node.previous;
+        }
+        node.previous = null;
+    }
+    
+    StudentSnapshot openSnapshot() {
+        while (true) {
+            long version = committed.get();
+            readers.merge(version, 1, Integer::sum);
+            // A writer that committed in between may have looked for readers before this one registered.
+            if (committed.get() == version) {
+                return new StudentSnapshot(this, version);
+            }
+            release(version);
+        }
+    }
+    
+    void release(long version) {
+        readers.computeIfPresent(version, (v, count) -> count == 1 ? null : count - 1);
+        Map.Entry<Long, Integer> oldest = readers.firstEntry();
+        if (historyRetained && (oldest == null || oldest.getKey() > version)) {
+            reclaim();
+        }
+    }
+    
+    private void reclaim() {
+        historyRetained = false;
+        Map.Entry<Long, Integer> oldest = readers.firstEntry();
+        long horizon = Math.min(oldest == null ? Long.MAX_VALUE : oldest.getKey(), committed.get());
+        for (Map.Entry<Integer, Version> entry : heads.entrySet()) {
+            Version head = entry.getValue();
+            prune(head, horizon);
+            if (head.student == null && head.version <= horizon) {
+                heads.remove(entry.getKey(), head);
+            }
+        }
+        if (!readers.isEmpty()) {
+            historyRetained = true;
+        }
+    }
+    
+    private static Student visible(Version node, long version) {
+        while (node != null && node.version > version) {
+            node = node.previous;
+        }
+        return node == null ? null : node.student;
+    }
+    
+    Student read(int id, long version) {
+        return visible(heads.get(id), version);
+    }
+    
+    Stream<Student> stream(long version) {
+        return heads.values().stream().map(head -> visible(head, version)).filter(Objects::nonNull);
+    }
+}
+
+class StudentSnapshot implements AutoCloseable {
+    private final VersionedStudentStore store;
+    private final long version;
+    private boolean closed;
+    
+    StudentSnapshot(VersionedStudentStore store, long version) {
+        this.store = store;
+        this.version = version;
+    }
+    
+    public long getVersion() { return version; }
+    
+    public Student get(int id) {
+        return store.read(id, version);
+    }
+    
+    public Stream<Student> stream() {
+        return store.stream(version);
+    }
+    
+    public int size() {
+        return (int) stream().count();
+    }
     
     @Override
-    public String toString() {
-        return String.format("ID: %d | Name: %s | Age: %d | Course: %s | GPA: %.2f", 
-                           id, name, age, course, gpa);
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            store.release(version);
+        }
     }
 }
 
-class StudentNotFoundException extends Exception {
-    public StudentNotFoundException(String message) {
-        super(message);
+class StudentQuery {
+    String course;
+    Integer minAge;
+    Integer maxAge;
+    Double minGpa;
+    Double maxGpa;
+    String namePrefix;
+    
+    public StudentQuery course(String course) {
+        this.course = course;
+        return this;
+    }
+    
+    public StudentQuery ageBetween(int minAge, int maxAge) {
+        this.minAge = minAge;
+        this.maxAge = maxAge;
+        return this;
+    }
+    
+    public StudentQuery gpaBetween(double minGpa, double maxGpa) {
+        this.minGpa = minGpa;
+        this.maxGpa = maxGpa;
+        return this;
+    }
+    
+    public StudentQuery nameStartsWith(String prefix) {
+        this.namePrefix = prefix;
+        return this;
+    }
+    
+    int lowAge() { return minAge != null ? minAge : Integer.MIN_VALUE; }
+    int highAge() { return maxAge != null ? maxAge : Integer.MAX_VALUE; }
+    double lowGpa() { return minGpa != null ? minGpa : Double.NEGATIVE_INFINITY; }
+    double highGpa() { return maxGpa != null ? maxGpa : Double.POSITIVE_INFINITY; }
+    
+    public boolean matches(Student s) {
+        if (course != null && !course.equals(s.getCourse())) return false;
+        if (s.getAge() < lowAge() || s.getAge() > highAge()) return false;
+        if ((minGpa != null || maxGpa != null) && (s.getGpa() < lowGpa() || s.getGpa() > highGpa())) return false;
+        if (namePrefix != null && !s.getName().toLowerCase().startsWith(namePrefix.toLowerCase())) return false;
+        return true;
     }
 }
 
 class StudentManagementSystem {
-    private ArrayList<Student> students;
+    private final VersionedStudentStore students;
     private static final String FILE_NAME = "students.dat";
+    private static final String COLUMNAR_FILE = "students.col";
+    private static final String JOURNAL_FILE = "students.log";
+    private static final int JOURNAL_MAGIC = 0x534A4E4C;
+    private static final int JOURNAL_VERSION = 1;
+    private static final int COMPACT_THRESHOLD = 1000;
+    private static final byte OP_ADD = 1;
+    private static final byte OP_UPDATE = 2;
+    private static final byte OP_DELETE = 3;
+    private static final int LOCK_STRIPES = 64;
+    private static final int GPA_PAGE_SIZE = 1024;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final ConcurrentLinkedQueue<byte[]> pendingRecords = new ConcurrentLinkedQueue<>();
+    private final Object journalLock = new Object();
+    private FileOutputStream journalOut;
+    private DataOutputStream journal;
+    private int journalRecords;
+    private volatile boolean sortedByGpa;
+    private volatile int parallelThreshold = 10_000;
+    private final GpaStats gpaStats = new GpaStats();
+    private final GpaIndex gpaIndex = new GpaIndex();
+    private final ConcurrentHashMap<String, Set<Integer>> courseIndex = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Integer, Set<Integer>> ageIndex = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, Set<Integer>> nameIndex = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, GpaStats> courseStats = new ConcurrentHashMap<>();
+    private final boolean columnar;
+    // Non-null while reads are served from the mapped column file; hydrate() moves the roster to the heap and clears it.
+    private volatile MappedStudentStore mapped;
+    // Journal changes replayed over the mapped rows; a null value marks a deleted ID.
+    private final TreeMap<Integer, Student> mappedChanges = new TreeMap<>();
+    private final Object hydrateLock = new Object();
+    // One buffered writer for every listing, in the console's default charset like the println output around it.
+    private final Writer console = new BufferedWriter(new OutputStreamWriter(System.out, Charset.defaultCharset()), 1 << 16);
     
     public StudentManagementSystem() {
-        students = new ArrayList<>();
+        this(false);
+    }
+    
+    // A columnar system keeps its snapshot in students.col, converting students.dat on first start. Whenever that
+    // file exists it is mapped instead of loaded, and lookups, the average and ID-order listings read its columns
+    // until a write or an indexed query first needs the heap.
+    public StudentManagementSystem(boolean columnar) {
+        students = new VersionedStudentStore();
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        File columns = new File(COLUMNAR_FILE);
+        this.columnar = columnar || columns.exists();
+        if (columns.exists()) {
+            try {
+                mapped = MappedStudentStore.open(columns);
+                System.out.println("✓ Data mapped successfully!");
+                replayJournal();
+                return;
+            } catch (IOException e) {
+                System.out.println("Error mapping data: " + e.getMessage());
+            }
+        }
         loadStudents();
+        rebuildIndexes();
+        if (this.columnar && !columns.exists()) {
+            saveStudents();
+            if (columns.exists()) {
+                new File(FILE_NAME).delete();
+            }
+        }
+    }
+    
+    private void hydrate() {
+        if (mapped == null) {
+            return;
+        }
+        synchronized (hydrateLock) {
+            MappedStudentStore store = mapped;
+            if (store == null) {
+                return;
+            }
+            mappedRows(store, 0, mappedChanges).forEachRemaining(students::put);
+            rebuildIndexes();
+            mapped = null;
+        }
+    }
+    
+    // Merges the ID-ordered rows from the given row on with the journal changes over the same ID range.
+    private static Iterator<Student> mappedRows(MappedStudentStore store, int fromRow, SortedMap<Integer, Student> changes) {
+        return new Iterator<Student>() {
+            private int row = fromRow;
+            private final Iterator<Map.Entry<Integer, Student>> pending = changes.entrySet().iterator();
+            private Map.Entry<Integer, Student> change = pending.hasNext() ? pending.next() : null;
+            private Student next = advance();
+            
+            private Student advance() {
+                while (row < store.size() || change != null) {
+                    if (change == null || (row < store.size() && store.getId(row) < change.getKey())) {
+                        return store.get(row++);
+                    }
+                    Map.Entry<Integer, Student> c = change;
+                    change = pending.hasNext() ? pending.next() : null;
+                    if (row < store.size() && store.getId(row) == c.getKey()) {
+                        row++;
+                    }
+                    if (c.getValue() != null) {
+                        return c.getValue();
+                    }
+                }
+                return null;
+            }
+            
+            public boolean hasNext() {
+                return next != null;
+            }
+            
+            public Student next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Student s = next;
+                next = advance();
+                return s;
+            }
+        };
+    }
+    
+    private Iterator<Student> idOrderAfter(int afterId) {
+        MappedStudentStore store = mapped;
+        if (store != null) {
+            return mappedRows(store, store.rowAfter(afterId), mappedChanges.tailMap(afterId, false));
+        }
+        return students.streamAfter(afterId).iterator();
+    }
+    
+    private void rebuildIndexes() {
+        indexStudents(students.stream().toArray(Student[]::new));
+    }
+    
+    // Adds a batch to every index. Writers must be excluded; readers see each index move from its old contents
+    // to its new ones, never an emptied or half-built structure.
+    private void indexStudents(Student[] batch) {
+        boolean parallel = batch.length >= parallelThreshold;
+        Student[] sorted = gpaIndex.insertAll(batch, parallel);
+        gpaStats.addAll(sorted, parallel);
+        
+        // Grouping keeps encounter order, so every course's members are still in GPA order.
+        Map<String, List<Student>> byCourse = (parallel ? Arrays.stream(sorted).parallel() : Arrays.stream(sorted))
+                .collect(Collectors.groupingBy(Student::getCourse));
+        (parallel ? byCourse.entrySet().parallelStream() : byCourse.entrySet().stream()).forEach(entry -> {
+            Student[] members = entry.getValue().toArray(new Student[0]);
+            courseStats.compute(entry.getKey(), (course, stats) -> {
+                if (stats == null) {
+                    stats = new GpaStats();
+                }
+                stats.addAll(members, members.length >= parallelThreshold);
+                return stats;
+            });
+        });
+        
+        Stream<Student> stream = parallel ? Arrays.stream(batch).parallel() : Arrays.stream(batch);
+        stream.forEach(s -> {
+            addToIndex(courseIndex, s.getCourse(), s.getId());
+            addToIndex(ageIndex, s.getAge(), s.getId());
+            addToIndex(nameIndex, s.getName().toLowerCase(), s.getId());
+        });
+    }
+    
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+    
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = Math.max(1, parallelThreshold);
+    }
+    
+    private void indexStudent(Student s) {
+        gpaStats.add(s.getGpa());
+        gpaIndex.insert(s);
+        addToIndex(courseIndex, s.getCourse(), s.getId());
+        addToIndex(ageIndex, s.getAge(), s.getId());
+        addToIndex(nameIndex, s.getName().toLowerCase(), s.getId());
+        courseStats.compute(s.getCourse(), (course, stats) -> {
+            if (stats == null) {
+                stats = new GpaStats();
+            }
+            stats.add(s.getGpa());
+            return stats;
+        });
     }
     
-    public void addStudent(Student student) {
-        students.add(student);
+    private void unindexStudent(Student s) {
+        gpaStats.remove(s.getGpa());
+        gpaIndex.remove(s);
+        removeFromIndex(courseIndex, s.getCourse(), s.getId());
+        removeFromIndex(ageIndex, s.getAge(), s.getId());
+        removeFromIndex(nameIndex, s.getName().toLowerCase(), s.getId());
+        courseStats.computeIfPresent(s.getCourse(), (course, stats) -> {
+            stats.remove(s.getGpa());
+            return stats.getCount() == 0 ? null : stats;
+        });
+    }
+    
+    private static <K> void addToIndex(ConcurrentMap<K, Set<Integer>> index, K key, int id) {
+        index.compute(key, (k, ids) -> {
+            if (ids == null) {
+                ids = ConcurrentHashMap.newKeySet();
+            }
+            ids.add(id);
+            return ids;
+        });
+    }
+    
+    private static <K> void removeFromIndex(ConcurrentMap<K, Set<Integer>> index, K key, int id) {
+        index.computeIfPresent(key, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+    
+    private static int countIds(Collection<Set<Integer>> sets, int limit) {
+        int count = 0;
+        for (Set<Integer> ids : sets) {
+            count += ids.size();
+            if (count >= limit) break;
+        }
+        return count;
+    }
+    
+    public Stream<Student> query(StudentQuery q) {
+        hydrate();
+        int best = Integer.MAX_VALUE;
+        Stream<Student> candidates = null;
+        if (q.course != null) {
+            Set<Integer> ids = courseIndex.getOrDefault(q.course, Collections.emptySet());
+            best = ids.size();
+            candidates = ids.stream().map(students::get);
+        }
+        if (q.minGpa != null || q.maxGpa != null) {
+            int count = gpaIndex.count(q.lowGpa(), q.highGpa());
+            if (count < best) {
+                best = count;
+                candidates = gpaIndex.range(q.lowGpa(), q.highGpa()).stream();
+            }
+        }
+        if (q.minAge != null || q.maxAge != null) {
+            Collection<Set<Integer>> sets = q.lowAge() > q.highAge()
+                    ? Collections.emptyList()
+                    : ageIndex.subMap(q.lowAge(), true, q.highAge(), true).values();
+            int count = countIds(sets, best);
+            if (count < best) {
+                best = count;
+                candidates = sets.stream().flatMap(Set::stream).map(students::get);
+            }
+        }
+        if (q.namePrefix != null) {
+            String prefix = q.namePrefix.toLowerCase();
+            Collection<Set<Integer>> sets = nameIndex.subMap(prefix, prefix + Character.MAX_VALUE).values();
+            int count = countIds(sets, best);
+            if (count < best) {
+                candidates = sets.stream().flatMap(Set::stream).map(students::get);
+            }
+        }
+        if (candidates == null) {
+            candidates = students.stream().parallel();
+        }
+        return candidates.filter(Objects::nonNull).filter(q::matches);
+    }
+    
+    private Object lockFor(int id) {
+        return locks[Math.floorMod(id, LOCK_STRIPES)];
+    }
+    
+    public void addStudent(Student student) throws DuplicateStudentException {
+        hydrate();
+        synchronized (lockFor(student.getId())) {
+            if (students.putIfAbsent(student) != null) {
+                throw new DuplicateStudentException("Student with ID " + student.getId() + " already exists!");
+            }
+            indexStudent(student);
+            pendingRecords.add(encodeRecord(OP_ADD, student.getId(), student));
+        }
         System.out.println("✓ Student added successfully!");
-        saveStudents();
+        flushJournal();
     }
     
     public void displayAllStudents() {
-        if (students.isEmpty()) {
+        if (sortedByGpa) {
+            hydrate();
+        }
+        MappedStudentStore store = mapped;
+        if (store != null ? !mappedRows(store, 0, mappedChanges).hasNext() : students.isEmpty()) {
             System.out.println("No students in the system.");
             return;
         }
         System.out.println("\n========== ALL STUDENTS ==========");
-        for (Student s : students) {
-            System.out.println(s);
+        if (store != null) {
+            writeStudents(() -> mappedRows(store, 0, mappedChanges), Integer.MAX_VALUE);
+        } else if (sortedByGpa) {
+            writeStudents(this::gpaOrder, Integer.MAX_VALUE);
+        } else {
+            try (StudentSnapshot snapshot = snapshot()) {
+                writeStudents(() -> snapshot.stream().iterator(), Integer.MAX_VALUE);
+            }
         }
         System.out.println("==================================\n");
     }
     
-    public Student searchStudentById(int id) throws StudentNotFoundException {
-        for (Student s : students) {
-            if (s.getId() == id) {
+    public int displayStudents(int offset, int pageSize) {
+        if (sortedByGpa) {
+            hydrate();
+            return writeStudents(gpaIndex.page(offset, pageSize), pageSize);
+        }
+        MappedStudentStore store = mapped;
+        Iterator<Student> it = store != null ? mappedRows(store, 0, mappedChanges) : students.stream().iterator();
+        for (int i = 0; i < offset && it.hasNext(); i++) {
+            it.next();
+        }
+        return writeStudents(() -> it, pageSize);
+    }
+    
+    // Walks the maintained GPA index a page at a time instead of sorting a copy of the roster.
+    private Iterator<Student> gpaOrder() {
+        return new Iterator<Student>() {
+            private List<Student> page = gpaIndex.pageAfter(null, GPA_PAGE_SIZE);
+            private int next;
+            
+            public boolean hasNext() {
+                if (next == page.size() && page.size() == GPA_PAGE_SIZE) {
+                    page = gpaIndex.pageAfter(page.get(next - 1), GPA_PAGE_SIZE);
+                    next = 0;
+                }
+                return next < page.size();
+            }
+            
+            public Student next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.get(next++);
+            }
+        };
+    }
+    
+    public int displayStudentsAfter(int afterId, int pageSize) {
+        int[] lastId = {afterId};
+        writeStudents(() -> new Iterator<Student>() {
+            private final Iterator<Student> it = idOrderAfter(afterId);
+            
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+            
+            public Student next() {
+                Student s = it.next();
+                lastId[0] = s.getId();
                 return s;
             }
+        }, pageSize);
+        return lastId[0];
+    }
+    
+    private int writeStudents(Iterable<Student> source, int limit) {
+        StringBuilder line = new StringBuilder(128);
+        int written = 0;
+        Iterator<Student> it = source.iterator();
+        Writer out = console;
+        synchronized (out) {
+            try {
+                // The limit is checked before advancing, so iterators that track position never run past the page.
+                while (written < limit && it.hasNext()) {
+                    Student s = it.next();
+                    line.setLength(0);
+                    StudentFormatter.appendTo(line, s).append('\n');
+                    out.append(line);
+                    written++;
+                }
+                out.flush();
+            } catch (IOException e) {
+                System.out.println("Error writing students: " + e.getMessage());
+            }
+        }
+        return written;
+    }
+    
+    public boolean hasStudentsAfter(int afterId) {
+        return idOrderAfter(afterId).hasNext();
+    }
+    
+    public boolean isSortedByGpa() {
+        return sortedByGpa;
+    }
+    
+    public StudentSnapshot snapshot() {
+        hydrate();
+        return students.openSnapshot();
+    }
+    
+    public Student searchStudentById(int id) throws StudentNotFoundException {
+        MappedStudentStore store = mapped;
+        Student s;
+        if (store == null) {
+            s = students.get(id);
+        } else {
+            s = mappedChanges.containsKey(id) ? mappedChanges.get(id) : store.findById(id);
+        }
+        if (s != null) {
+            return s;
         }
         throw new StudentNotFoundException("Student with ID " + id + " not found!");
     }
     
     public void updateStudent(int id, String name, int age, String course, double gpa) 
             throws StudentNotFoundException {
-        Student student = searchStudentById(id);
-        student.setName(name);
-        student.setAge(age);
-        student.setCourse(course);
-        student.setGpa(gpa);
+        Student student = new Student(id, name, age, course, gpa);
+        hydrate();
+        synchronized (lockFor(id)) {
+            Student previous = students.replace(id, student);
+            if (previous == null) {
+                throw new StudentNotFoundException("Student with ID " + id + " not found!");
+            }
+            unindexStudent(previous);
+            indexStudent(student);
+            pendingRecords.add(encodeRecord(OP_UPDATE, id, student));
+        }
         System.out.println("✓ Student updated successfully!");
-        saveStudents();
+        flushJournal();
     }
     
     public void deleteStudent(int id) throws StudentNotFoundException {
-        Student student = searchStudentById(id);
-        students.remove(student);
+        hydrate();
+        synchronized (lockFor(id)) {
+            Student previous = students.remove(id);
+            if (previous == null) {
+                throw new StudentNotFoundException("Student with ID " + id + " not found!");
+            }
+            unindexStudent(previous);
+            pendingRecords.add(encodeRecord(OP_DELETE, id, null));
+        }
         System.out.println("✓ Student deleted successfully!");
-        saveStudents();
+        flushJournal();
     }
     
     public void sortStudentsByGPA() {
-        Collections.sort(students, (s1, s2) -> Double.compare(s2.getGpa(), s1.getGpa()));
+        sortedByGpa = true;
         System.out.println("✓ Students sorted by GPA (highest to lowest)");
     }
     
     public void calculateAverageGPA() {
-        if (students.isEmpty()) {
+        MappedStudentStore store = mapped;
+        GpaSummary summary;
+        if (store == null) {
+            summary = gpaStats.summary();
+        } else {
+            Student[] changed = mappedChanges.values().stream().filter(Objects::nonNull).toArray(Student[]::new);
+            summary = store.summarizeGpa(mappedChanges.keySet()).combine(GpaSummary.of(changed, 0, changed.length));
+        }
+        if (summary.count == 0) {
             System.out.println("No students to calculate average.");
             return;
         }
-        double sum = 0;
-        for (Student s : students) {
-            sum += s.getGpa();
+        System.out.printf("Average GPA: %.2f\n", summary.mean);
+        System.out.printf("Min: %.2f | Max: %.2f | Std Dev: %.2f\n",
+                          summary.min, summary.max, Math.sqrt(summary.m2 / summary.count));
+    }
+    
+    public List<Student> getTopStudentsByGPA(int k) {
+        hydrate();
+        return gpaIndex.topK(k);
+    }
+    
+    public List<Student> getBottomStudentsByGPA(int k) {
+        hydrate();
+        return gpaIndex.bottomK(k);
+    }
+    
+    public Student getGPAPercentile(double percentile) {
+        hydrate();
+        return gpaIndex.percentile(percentile);
+    }
+    
+    public List<Student> getStudentsInGPARange(double minGpa, double maxGpa) {
+        hydrate();
+        return gpaIndex.range(minGpa, maxGpa);
+    }
+    
+    public GpaStats getGpaStatistics() {
+        hydrate();
+        return gpaStats;
+    }
+    
+    public GpaStats getCourseStatistics(String course) {
+        hydrate();
+        return courseStats.get(course);
+    }
+    
+    public Map<String, GpaStats> getAllCourseStatistics() {
+        hydrate();
+        return Collections.unmodifiableMap(courseStats);
+    }
+    
+    private void runExclusive(int stripe, Runnable action) {
+        if (stripe == LOCK_STRIPES) {
+            action.run();
+            return;
+        }
+        synchronized (locks[stripe]) {
+            runExclusive(stripe + 1, action);
+        }
+    }
+    
+    public int importStudents(String fileName) throws IOException {
+        hydrate();
+        List<Student> rows;
+        int[] invalid = new int[1];
+        if (fileName.toLowerCase().endsWith(".csv")) {
+            try (Stream<String> lines = Files.lines(Paths.get(fileName), StandardCharsets.UTF_8)) {
+                List<Student> parsed = lines.parallel()
+                        .filter(line -> !line.isBlank() && !line.startsWith(StudentCsv.HEADER))
+                        .map(StudentCsv::parse)
+                        .collect(Collectors.toList());
+                rows = new ArrayList<>(parsed.size());
+                for (Student st : parsed) {
+                    if (st == null) {
+                        invalid[0]++;
+                    } else {
+                        rows.add(st);
+                    }
+                }
+            }
+        } else {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), 1 << 16))) {
+                int count = StudentCodec.readHeader(in);
+                rows = new ArrayList<>(Math.min(count, 1 << 16));
+                for (int i = 0; i < count; i++) {
+                    Student st = StudentCodec.read(in);
+                    if (st.isValid()) {
+                        rows.add(st);
+                    } else {
+                        invalid[0]++;
+                    }
+                }
+            }
+        }
+        
+        List<Student> accepted = new ArrayList<>(rows.size());
+        synchronized (journalLock) {
+            flushJournal();
+            runExclusive(0, () -> {
+                for (Student st : rows) {
+                    if (students.putIfAbsent(st) == null) {
+                        accepted.add(st);
+                    } else {
+                        invalid[0]++;
+                    }
+                }
+                indexStudents(accepted.toArray(new Student[0]));
+                // Small imports are journaled like any other add; large ones go straight into a new snapshot.
+                if (accepted.size() < COMPACT_THRESHOLD) {
+                    for (Student st : accepted) {
+                        pendingRecords.add(encodeRecord(OP_ADD, st.getId(), st));
+                    }
+                }
+            });
+            if (accepted.size() < COMPACT_THRESHOLD) {
+                flushJournal();
+            } else {
+                writeSnapshot();
+            }
+        }
+        System.out.println("✓ Imported " + accepted.size() + " students (" + invalid[0] + " rows skipped)");
+        return accepted.size();
+    }
+    
+    public int exportStudents(String fileName) throws IOException {
+        int count = 0;
+        if (fileName.toLowerCase().endsWith(".csv")) {
+            try (StudentSnapshot snapshot = snapshot();
+                 Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileName), StandardCharsets.UTF_8), 1 << 16)) {
+                out.write(StudentCsv.HEADER);
+                out.write('\n');
+                for (Student st : (Iterable<Student>) snapshot.stream()::iterator) {
+                    StudentCsv.write(out, st);
+                    count++;
+                }
+            }
+        } else {
+            try (StudentSnapshot snapshot = snapshot();
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16))) {
+                StudentCodec.writeHeader(out, 0);
+                for (Student st : (Iterable<Student>) snapshot.stream()::iterator) {
+                    StudentCodec.write(out, st);
+                    count++;
+                }
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(fileName, "rw")) {
+                raf.seek(8);
+                raf.writeInt(count);
+            }
+        }
+        System.out.println("✓ Exported " + count + " students to " + fileName);
+        return count;
+    }
+    
+    private static byte[] encodeRecord(byte op, int id, Student student) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(op);
+            if (op == OP_DELETE) {
+                out.writeInt(id);
+            } else {
+                StudentCodec.write(out, student);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    private void flushJournal() {
+        synchronized (journalLock) {
+            if (pendingRecords.isEmpty()) {
+                return;
+            }
+            try {
+                if (journal == null) {
+                    boolean fresh = new File(JOURNAL_FILE).length() == 0;
+                    journalOut = new FileOutputStream(JOURNAL_FILE, true);
+                    journal = new DataOutputStream(new BufferedOutputStream(journalOut));
+                    if (fresh) {
+                        journal.writeInt(JOURNAL_MAGIC);
+                        journal.writeInt(JOURNAL_VERSION);
+                    }
+                }
+                byte[] record;
+                while ((record = pendingRecords.poll()) != null) {
+                    AtomicFileStore.writeFrame(journal, record);
+                    journalRecords++;
+                }
+                journal.flush();
+                journalOut.getFD().sync();
+            } catch (IOException e) {
+                System.out.println("Error writing journal: " + e.getMessage());
+                return;
+            }
+            if (journalRecords >= COMPACT_THRESHOLD) {
+                saveStudents();
+            }
         }
-        double avg = sum / students.size();
-        System.out.printf("Average GPA: %.2f\n", avg);
     }
     
     private void saveStudents() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(FILE_NAME))) {
-            oos.writeObject(students);
+        synchronized (journalLock) {
+            writeSnapshot();
+        }
+    }
+    
+    private void writeSnapshot() {
+        try (StudentSnapshot snapshot = snapshot()) {
+            if (columnar) {
+                MappedStudentStore.write(new File(COLUMNAR_FILE), snapshot.stream().collect(Collectors.toList()));
+            } else {
+                AtomicFileStore.replace(new File(FILE_NAME), out -> {
+                    StudentCodec.writeHeader(out, snapshot.size());
+                    for (Student s : (Iterable<Student>) snapshot.stream()::iterator) {
+                        StudentCodec.write(out, s);
+                    }
+                });
+            }
         } catch (IOException e) {
             System.out.println("Error saving data: " + e.getMessage());
+            return;
+        }
+        try {
+            if (journal != null) {
+                journal.close();
+                journal = null;
+                journalOut = null;
+            }
+            new FileOutputStream(JOURNAL_FILE).close();
+            journalRecords = 0;
+        } catch (IOException e) {
+            System.out.println("Error truncating journal: " + e.getMessage());
         }
     }
     
-    @SuppressWarnings("unchecked")
     private void loadStudents() {
         File file = new File(FILE_NAME);
-        if (file.exists()) {
-            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(FILE_NAME))) {
-                students = (ArrayList<Student>) ois.readObject();
+        boolean migrate = false;
+        if (file.exists() && file.length() > 0) {
+            try {
+                if (StudentCodec.isLegacyFormat(file)) {
+                    loadLegacyStudents(file);
+                    migrate = true;
+                } else {
+                    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                        int count = StudentCodec.readHeader(in);
+                        for (int i = 0; i < count; i++) {
+                            Student s = StudentCodec.read(in);
+                            students.put(s);
+                        }
+                    }
+                }
                 System.out.println("✓ Data loaded successfully!");
             } catch (IOException | ClassNotFoundException e) {
                 System.out.println("Error loading data: " + e.getMessage());
             }
         }
+        replayJournal();
+        if (migrate && journalRecords == 0) {
+            saveStudents();
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void loadLegacyStudents(File file) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            ArrayList<Student> loaded = (ArrayList<Student>) ois.readObject();
+            for (Student s : loaded) {
+                students.put(s);
+            }
+        }
+    }
+    
+    private void applyRecord(DataInputStream in) throws IOException {
+        byte op = in.readByte();
+        if (op == OP_DELETE) {
+            int id = in.readInt();
+            if (mapped != null) {
+                mappedChanges.put(id, null);
+            } else {
+                students.remove(id);
+            }
+        } else {
+            Student s = StudentCodec.read(in);
+            if (mapped != null) {
+                mappedChanges.put(s.getId(), s);
+            } else {
+                students.put(s);
+            }
+        }
+        journalRecords++;
+    }
+    
+    // Journals written before records were checksummed have no header; they are replayed up to the first short record.
+    private void replayJournal() {
+        File file = new File(JOURNAL_FILE);
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            byte[] data = Files.readAllBytes(file.toPath());
+            DataInputStream header = new DataInputStream(new ByteArrayInputStream(data));
+            if (data.length >= 8 && header.readInt() == JOURNAL_MAGIC && header.readInt() == JOURNAL_VERSION) {
+                AtomicFileStore.Frames frames = AtomicFileStore.readFrames(data, 8);
+                for (byte[] record : frames.records) {
+                    applyRecord(new DataInputStream(new ByteArrayInputStream(record)));
+                }
+                if (frames.isTruncated()) {
+                    System.out.println("Warning: recovered " + frames.records.size() + " journal records, discarded "
+                                       + (frames.length - frames.validEnd) + " damaged trailing bytes");
+                    AtomicFileStore.truncate(file, frames.validEnd);
+                }
+            } else {
+                DataInputStream dis = new DataInputStream(new ByteArrayInputStream(data));
+                while (dis.available() > 0) {
+                    applyRecord(dis);
+                }
+            }
+        } catch (EOFException e) {
+            System.out.println("Warning: ignoring incomplete journal record");
+        } catch (IOException e) {
+            System.out.println("Error reading journal: " + e.getMessage());
+        }
+        // A mapped start keeps its journal until the roster is hydrated; compacting now would build it on the heap.
+        if (journalRecords > 0 && mapped == null) {
+            saveStudents();
+        }
+    }
+}
+
+class StudentBenchmark {
+    private static final int ROUNDS = 5;
+    
+    private static Student[] generate(int size) {
+        Random random = new Random(42);
+        Student[] students = new Student[size];
+        for (int i = 0; i < size; i++) {
+            double gpa = Math.round(random.nextDouble() * 400) / 100.0;
+            students[i] = new Student(i, "Student" + i, 18 + random.nextInt(10), "Course" + random.nextInt(20), gpa);
+        }
+        return students;
+    }
+    
+    private static long timeStats(Student[] students, boolean parallel) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            GpaSummaryTask.summarize(students, parallel);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+    
+    private static long timeSort(Student[] students, boolean parallel) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            GpaIndex index = new GpaIndex();
+            long start = System.nanoTime();
+            index.build(students, parallel);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+    
+    private static boolean sameResults(Student[] students) {
+        GpaSummary seq = GpaSummaryTask.summarize(students, false);
+        GpaSummary par = GpaSummaryTask.summarize(students, true);
+        GpaIndex seqIndex = new GpaIndex();
+        GpaIndex parIndex = new GpaIndex();
+        seqIndex.build(students, false);
+        parIndex.build(students, true);
+        return seq.count == par.count && seq.sum == par.sum && seq.mean == par.mean
+            && seq.m2 == par.m2 && seq.min == par.min && seq.max == par.max
+            && seqIndex.toList().equals(parIndex.toList());
+    }
+    
+    public static void main(String[] args) {
+        int[] sizes = {1_000, 10_000, 100_000, 1_000_000};
+        System.out.println("Parallelism: " + Runtime.getRuntime().availableProcessors() + " cores");
+        System.out.printf("%10s | %12s %12s | %12s %12s | %s%n",
+                          "Students", "Stats seq", "Stats par", "Sort seq", "Sort par", "Identical");
+        for (int size : sizes) {
+            Student[] students = generate(size);
+            timeStats(students, false);
+            timeStats(students, true);
+            System.out.printf("%10d | %10.2fms %10.2fms | %10.2fms %10.2fms | %s%n",
+                              size,
+                              timeStats(students, false) / 1e6,
+                              timeStats(students, true) / 1e6,
+                              timeSort(students, false) / 1e6,
+                              timeSort(students, true) / 1e6,
+                              sameResults(students));
+        }
     }
 }
 
 public class StudentManagementApp {
+    private static final int PAGE_SIZE = 20;
+    
+    private static void showPaged(StudentManagementSystem sms, Scanner sc) {
+        System.out.println("\n========== ALL STUDENTS ==========");
+        if (!sms.isSortedByGpa()) {
+            showPagedById(sms, sc);
+            return;
+        }
+        int offset = 0;
+        while (true) {
+            int shown = sms.displayStudents(offset, PAGE_SIZE);
+            if (shown == 0 && offset == 0) {
+                System.out.println("No students in the system.");
+            }
+            offset += shown;
+            if (shown < PAGE_SIZE) {
+                break;
+            }
+            System.out.print("-- " + offset + " shown, Enter for more, q to stop -- ");
+            if (sc.nextLine().trim().equalsIgnoreCase("q")) {
+                break;
+            }
+        }
+        System.out.println("==================================\n");
+    }
+    
+    // Keyset paging: each page starts after the last ID shown instead of skipping everything before it.
+    private static void showPagedById(StudentManagementSystem sms, Scanner sc) {
+        int lastId = Integer.MIN_VALUE;
+        while (true) {
+            int next = sms.displayStudentsAfter(lastId, PAGE_SIZE);
+            if (next == lastId) {
+                if (lastId == Integer.MIN_VALUE) {
+                    System.out.println("No students in the system.");
+                }
+                break;
+            }
+            lastId = next;
+            if (!sms.hasStudentsAfter(lastId)) {
+                break;
+            }
+            System.out.print("-- shown through ID " + lastId + ", Enter for more, q to stop -- ");
+            if (sc.nextLine().trim().equalsIgnoreCase("q")) {
+                break;
+            }
+        }
+        System.out.println("==================================\n");
+    }
+    
     public static void main(String[] args) {
         Scanner sc = new Scanner(System.in);
-        StudentManagementSystem sms = new StudentManagementSystem();
+        boolean columnar = Arrays.asList(args).contains("--mapped");
+        StudentManagementSystem sms = new StudentManagementSystem(columnar);
         
         while (true) {
             System.out.println("\n╔════════════════════════════════════╗");
@@ -150,7 +1964,9 @@ public class StudentManagementApp {
             System.out.println("5. Delete Student");
             System.out.println("6. Sort by GPA");
             System.out.println("7. Calculate Average GPA");
-            System.out.println("8. Exit");
+            System.out.println("8. Import Students (CSV/binary)");
+            System.out.println("9. Export Students (CSV/binary)");
+            System.out.println("10. Exit");
             System.out.print("\nEnter your choice: ");
             
             int choice = sc.nextInt();
@@ -177,7 +1993,7 @@ public class StudentManagementApp {
                         break;
                         
                     case 2:
-                        sms.displayAllStudents();
+                        showPaged(sms, sc);
                         break;
                         
                     case 3:
@@ -212,7 +2028,7 @@ public class StudentManagementApp {
                         
                     case 6:
                         sms.sortStudentsByGPA();
-                        sms.displayAllStudents();
+                        showPaged(sms, sc);
                         break;
                         
                     case 7:
@@ -220,6 +2036,16 @@ public class StudentManagementApp {
                         break;
                         
                     case 8:
+                        System.out.print("Enter file to import: ");
+                        sms.importStudents(sc.nextLine().trim());
+                        break;
+                        
+                    case 9:
+                        System.out.print("Enter file to export to: ");
+                        sms.exportStudents(sc.nextLine().trim());
+                        break;
+                        
+                    case 10:
                         System.out.println("Thank you for using the system!");
                         sc.close();
                         System.exit(0);
@@ -227,7 +2053,9 @@ public class StudentManagementApp {
                     default:
                         System.out.println("Invalid choice! Please try again.");
                 }
-            } catch (StudentNotFoundException e) {
+            } catch (StudentNotFoundException | DuplicateStudentException e) {
+                System.out.println("Error: " + e.getMessage());
+            } catch (IOException e) {
                 System.out.println("Error: " + e.getMessage());
             } catch (InputMismatchException e) {
                 System.out.println("Error: Invalid input type!");